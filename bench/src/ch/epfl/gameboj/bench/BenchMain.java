@@ -0,0 +1,35 @@
+package ch.epfl.gameboj.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes their results as JSON, so that they can be
+ * compared from one version to the other.
+ *
+ * Arguments: the file the results are written to (bench-results.json by
+ * default), then optionally a regular expression selecting the benchmarks
+ * to run, all of them by default.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+public final class BenchMain {
+    private static final String DEFAULT_RESULT_FILE = "bench-results.json";
+
+    public static void main(String[] args) throws RunnerException {
+        String resultFile = args.length > 0 ? args[0] : DEFAULT_RESULT_FILE;
+        String include = args.length > 1 ? args[1]
+                : BenchMain.class.getPackageName() + ".*";
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        new Runner(options).run();
+    }
+}
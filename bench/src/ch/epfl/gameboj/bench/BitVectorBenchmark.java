@@ -0,0 +1,88 @@
+package ch.epfl.gameboj.bench;
+
+import ch.epfl.gameboj.bits.BitVector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the operations of BitVector, on vectors the size of the LCD's
+ * lines and of its background.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitVectorBenchmark {
+    @Param({"160", "256"})
+    public int size;
+
+    private BitVector v1;
+    private BitVector v2;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(2018);
+        v1 = randomVector(random);
+        v2 = randomVector(random);
+    }
+
+    @Benchmark
+    public BitVector not() {
+        return v1.not();
+    }
+
+    @Benchmark
+    public BitVector and() {
+        return v1.and(v2);
+    }
+
+    @Benchmark
+    public BitVector or() {
+        return v1.or(v2);
+    }
+
+    @Benchmark
+    public BitVector select() {
+        return BitVector.select(v1, v2, v1);
+    }
+
+    @Benchmark
+    public BitVector shift() {
+        return v1.shift(13);
+    }
+
+    @Benchmark
+    public BitVector extractWrapped() {
+        return v1.extractWrapped(-77, size);
+    }
+
+    @Benchmark
+    public BitVector extractZeroExtended() {
+        return v1.extractZeroExtended(45, size);
+    }
+
+    private BitVector randomVector(Random random) {
+        BitVector.Builder builder = new BitVector.Builder(size);
+        for (int i = 0; i < size / Byte.SIZE; ++i)
+            builder.setByte(i, random.nextInt(1 << Byte.SIZE));
+        return builder.build();
+    }
+}
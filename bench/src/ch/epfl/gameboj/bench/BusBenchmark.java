@@ -0,0 +1,91 @@
+package ch.epfl.gameboj.bench;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.GameBoy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of dispatching reads and writes on the bus of a complete GameBoy.
+ *
+ * The addresses are drawn in the areas accessed by games: ROM, video RAM,
+ * work RAM, OAM, registers and high RAM.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusBenchmark {
+    private static final int ACCESSES = 4096;
+    //Start and end (exclusive) of the accessed areas
+    private static final int[][] AREAS = {
+            {0x0000, 0x8000}, {0x8000, 0xA000}, {0xC000, 0xE000},
+            {0xFE00, 0xFEA0}, {0xFF00, 0xFF80}, {0xFF80, 0xFFFF}
+    };
+    //Areas that can be written without changing the state of the hardware
+    private static final int[][] WRITABLE_AREAS = {
+            {0x8000, 0xA000}, {0xC000, 0xE000}, {0xFE00, 0xFEA0},
+            {0xFF80, 0xFFFF}
+    };
+
+    private Bus bus;
+    private int[] readAddresses;
+    private int[] writeAddresses;
+
+    @Setup
+    public void setUp() {
+        GameBoy gameBoy = Roms.gameBoyOf("tetris.gb");
+        gameBoy.runUntil(GameBoy.CYCLES_PER_SECOND);
+        bus = gameBoy.bus();
+
+        Random random = new Random(2018);
+        readAddresses = addresses(AREAS, random);
+        writeAddresses = addresses(WRITABLE_AREAS, random);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public int read() {
+        int sum = 0;
+        for (int address : readAddresses)
+            sum += bus.read(address);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public void write() {
+        for (int i = 0; i < ACCESSES; ++i)
+            bus.write(writeAddresses[i], i & 0xFF);
+    }
+
+    /**
+     * Draws addresses uniformly in the given areas
+     */
+    private static int[] addresses(int[][] areas, Random random) {
+        int[] addresses = new int[ACCESSES];
+        for (int i = 0; i < ACCESSES; ++i) {
+            int[] area = areas[random.nextInt(areas.length)];
+            addresses[i] = area[0] + random.nextInt(area[1] - area[0]);
+        }
+        return addresses;
+    }
+}
@@ -0,0 +1,98 @@
+package ch.epfl.gameboj.bench;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+import ch.epfl.gameboj.component.lcd.LcdImageLine;
+import ch.epfl.gameboj.component.lcd.RenderPolicy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparison of the scalar and vector backends combining the lines of the
+ * LCD controller, on whole frames and on the mapping of colors of a line.
+ *
+ * Every combination of parameters runs in its own JVM, in which the backend
+ * is chosen through the gameboj.compositor property before the LCD classes
+ * are loaded. The vector backend needs the simd module on the class path.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class CompositorBenchmark {
+    private static final int LINE_SIZE = 256;
+    private static final int PALETTE = 0b00_01_10_11;
+
+    @Param({"scalar", "vector"})
+    public String compositor;
+
+    private LcdImageLine line;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("gameboj.compositor", compositor);
+
+        Random random = new Random(2018);
+        LcdImageLine.Builder builder = new LcdImageLine.Builder(LINE_SIZE);
+        for (int i = 0; i < LINE_SIZE / Byte.SIZE; ++i)
+            builder.setBytes(i, random.nextInt(1 << Byte.SIZE),
+                    random.nextInt(1 << Byte.SIZE));
+        line = builder.build();
+    }
+
+    @Benchmark
+    public LcdImageLine mapColors() {
+        return line.mapColors(PALETTE);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public LcdImage frame(Frames frames) {
+        return frames.gameBoy.lcdController().liveImage();
+    }
+
+    /**
+     * The frames drawn, the game running for one frame without drawing
+     * before every invocation, as in LcdBenchmark
+     */
+    @State(Scope.Thread)
+    public static class Frames {
+        @Param({"tetris.gb", "Super Mario Land.gb"})
+        public String rom;
+
+        private GameBoy gameBoy;
+
+        @Setup
+        //Depends on the benchmark so that the backend is chosen first
+        public void setUp(CompositorBenchmark benchmark) {
+            gameBoy = Roms.gameBoyOf(rom);
+            gameBoy.lcdController().setRenderPolicy(RenderPolicy.onDemand());
+            gameBoy.runUntil(5 * GameBoy.CYCLES_PER_SECOND);
+        }
+
+        @Setup(Level.Invocation)
+        public void runFrame() {
+            gameBoy.runUntil(gameBoy.cycles() + LcdController.IMAGE_CYCLES);
+        }
+    }
+}
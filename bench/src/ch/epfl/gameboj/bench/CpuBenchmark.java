@@ -0,0 +1,68 @@
+package ch.epfl.gameboj.bench;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.RenderPolicy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instruction throughput of the CPU on the blargg test ROMs.
+ *
+ * Frames aren't drawn, so that the time is mostly spent executing
+ * instructions. Every operation emulates one frame's worth of cycles; the
+ * GameBoy is brought back to the start of the test regularly, so that it
+ * keeps running the test's instructions instead of its final loop.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpuBenchmark {
+    //Frames emulated before going back to the start of the test
+    private static final int FRAMES_PER_RUN = 120;
+    //Cycles spent in the boot ROM before the test starts
+    private static final long BOOT_CYCLES = 0x100000;
+
+    @Param({"06-ld r,r.gb", "09-op r,r.gb", "10-bit ops.gb",
+            "11-op a,(hl).gb"})
+    public String rom;
+
+    private GameBoy gameBoy;
+    private byte[] start;
+    private long end;
+
+    @Setup
+    public void setUp() {
+        gameBoy = Roms.gameBoyOf(rom);
+        gameBoy.lcdController().setRenderPolicy(RenderPolicy.onDemand());
+        gameBoy.runUntil(BOOT_CYCLES);
+        start = gameBoy.snapshot();
+        end = BOOT_CYCLES + FRAMES_PER_RUN * LcdController.IMAGE_CYCLES;
+    }
+
+    @Benchmark
+    public long frame() {
+        if (gameBoy.cycles() >= end)
+            gameBoy.restore(start);
+        gameBoy.runUntil(gameBoy.cycles() + LcdController.IMAGE_CYCLES);
+        return gameBoy.cycles();
+    }
+}
@@ -0,0 +1,51 @@
+package ch.epfl.gameboj.bench;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end emulation speed, in frames per second: every operation runs
+ * a game for one frame, drawing it, as the graphical interface does.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameBenchmark {
+    @Param({"tetris.gb", "Super Mario Land.gb"})
+    public String rom;
+
+    private GameBoy gameBoy;
+
+    @Setup
+    public void setUp() {
+        gameBoy = Roms.gameBoyOf(rom);
+        gameBoy.runUntil(5 * GameBoy.CYCLES_PER_SECOND);
+    }
+
+    @Benchmark
+    public LcdImage frame() {
+        gameBoy.runUntil(gameBoy.cycles() + LcdController.IMAGE_CYCLES);
+        return gameBoy.lcdController().liveImage();
+    }
+}
@@ -0,0 +1,61 @@
+package ch.epfl.gameboj.bench;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.lcd.LcdImage;
+import ch.epfl.gameboj.component.lcd.RenderPolicy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of drawing the image of the LCD controller.
+ *
+ * The frames are drawn on demand: before every invocation, the game runs
+ * for one frame without drawing, then only the drawing of that frame is
+ * measured.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LcdBenchmark {
+    @Param({"tetris.gb", "Super Mario Land.gb"})
+    public String rom;
+
+    private GameBoy gameBoy;
+
+    @Setup
+    public void setUp() {
+        gameBoy = Roms.gameBoyOf(rom);
+        gameBoy.lcdController().setRenderPolicy(RenderPolicy.onDemand());
+        gameBoy.runUntil(5 * GameBoy.CYCLES_PER_SECOND);
+    }
+
+    @Setup(Level.Invocation)
+    public void runFrame() {
+        gameBoy.runUntil(gameBoy.cycles() + LcdController.IMAGE_CYCLES);
+    }
+
+    @Benchmark
+    public LcdImage frame() {
+        return gameBoy.lcdController().liveImage();
+    }
+}
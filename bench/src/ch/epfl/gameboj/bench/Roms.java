@@ -0,0 +1,38 @@
+package ch.epfl.gameboj.bench;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Access to the ROMs bundled with the project, used by the benchmarks.
+ *
+ * The ROMs are looked up in the directory given by the system property
+ * gameboj.roms, the working directory by default.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+final class Roms {
+    private static final String DIRECTORY_PROPERTY = "gameboj.roms";
+
+    private Roms() {}
+
+    /**
+     * Constructs a GameBoy running the ROM with the given file name
+     * @param name the file name of the ROM
+     * @return a new GameBoy, which hasn't run yet
+     * @throws UncheckedIOException if the ROM can't be read
+     */
+    static GameBoy gameBoyOf(String name) {
+        File directory = new File(System.getProperty(DIRECTORY_PROPERTY, "."));
+        try {
+            return new GameBoy(Cartridge.ofFile(new File(directory, name)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ch.epfl.gameboj.component.lcd;
+
+import ch.epfl.gameboj.bits.Bits;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Backend combining lines several words at a time, with the incubating
+ * Vector API. It is compiled and run with --add-modules jdk.incubator.vector.
+ *
+ * Lines are 5 (160 pixels) or 8 (256 pixels) words long, so vectors of 4
+ * words are used, which every platform supports; the remaining words are
+ * combined by the scalar backend.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+final class VectorCompositor implements LineCompositor {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_128;
+    private static final int WORD_SIZE = Integer.SIZE;
+    private static final int NUMBER_OF_COLORS = 4;
+
+    @Override
+    public void below(LcdLineBuffer line, LcdLineBuffer above,
+            int[] opacity) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+        int[] lineOpacity = line.opacityWords();
+
+        int i = 0;
+        for (; i < SPECIES.loopBound(msb.length); i += SPECIES.length()) {
+            IntVector o = IntVector.fromArray(SPECIES, opacity, i);
+            select(o, above.msbWords(), msb, msb, i);
+            select(o, above.lsbWords(), lsb, lsb, i);
+            o.or(IntVector.fromArray(SPECIES, lineOpacity, i))
+                    .intoArray(lineOpacity, i);
+        }
+        ScalarCompositor.below(line, above, opacity, i);
+    }
+
+    @Override
+    public void above(LcdLineBuffer line, LcdLineBuffer below) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+        int[] opacity = line.opacityWords();
+
+        int i = 0;
+        for (; i < SPECIES.loopBound(msb.length); i += SPECIES.length()) {
+            IntVector o = IntVector.fromArray(SPECIES, opacity, i);
+            select(o, msb, below.msbWords(), msb, i);
+            select(o, lsb, below.lsbWords(), lsb, i);
+            o.or(IntVector.fromArray(SPECIES, below.opacityWords(), i))
+                    .intoArray(opacity, i);
+        }
+        ScalarCompositor.above(line, below, i);
+    }
+
+    @Override
+    public void behind(LcdLineBuffer line, LcdLineBuffer behind) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+        int[] opacity = line.opacityWords();
+
+        int i = 0;
+        for (; i < SPECIES.loopBound(msb.length); i += SPECIES.length()) {
+            IntVector behindOpacity = IntVector.fromArray(SPECIES,
+                    behind.opacityWords(), i);
+            IntVector o = IntVector.fromArray(SPECIES, opacity, i)
+                    .or(behindOpacity.not());
+            select(o, msb, behind.msbWords(), msb, i);
+            select(o, lsb, behind.lsbWords(), lsb, i);
+            behindOpacity.or(o).intoArray(opacity, i);
+        }
+        ScalarCompositor.behind(line, behind, i);
+    }
+
+    @Override
+    public void join(LcdLineBuffer line, LcdLineBuffer that, int index) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+        int[] opacity = line.opacityWords();
+        //Index of the join relative to the start of every word of a vector
+        IntVector bits = IntVector.broadcast(SPECIES, index)
+                .sub(IntVector.zero(SPECIES).addIndex(WORD_SIZE));
+
+        int i = 0;
+        for (; i < SPECIES.loopBound(msb.length); i += SPECIES.length()) {
+            IntVector bit = bits.sub(i * WORD_SIZE);
+            IntVector thatMask = IntVector.broadcast(SPECIES, -1)
+                    .lanewise(VectorOperators.LSHL, bit)
+                    .blend(-1, bit.compare(VectorOperators.LE, 0))
+                    .blend(0, bit.compare(VectorOperators.GE, WORD_SIZE));
+
+            select(thatMask, that.msbWords(), msb, msb, i);
+            select(thatMask, that.lsbWords(), lsb, lsb, i);
+            select(thatMask, that.opacityWords(), opacity, opacity, i);
+        }
+        ScalarCompositor.join(line, that, index, i);
+    }
+
+    @Override
+    public void mapColors(LcdLineBuffer line, int palette) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+
+        int i = 0;
+        for (; i < SPECIES.loopBound(msb.length); i += SPECIES.length()) {
+            IntVector m = IntVector.fromArray(SPECIES, msb, i);
+            IntVector l = IntVector.fromArray(SPECIES, lsb, i);
+            IntVector newMsb = IntVector.zero(SPECIES);
+            IntVector newLsb = IntVector.zero(SPECIES);
+
+            for (int color = 0; color < NUMBER_OF_COLORS; ++color) {
+                IntVector mask = (Bits.test(color, 1) ? m : m.not())
+                        .and(Bits.test(color, 0) ? l : l.not());
+
+                if (Bits.test(palette, color * 2))
+                    newLsb = newLsb.or(mask);
+                if (Bits.test(palette, color * 2 + 1))
+                    newMsb = newMsb.or(mask);
+            }
+            newMsb.intoArray(msb, i);
+            newLsb.intoArray(lsb, i);
+        }
+        ScalarCompositor.mapColors(line, palette, i);
+    }
+
+    /**
+     * Stores in the destination the words of a where the mask is 1 and the
+     * ones of b where it is 0, for the vector starting at the given index
+     */
+    private static void select(IntVector mask, int[] a, int[] b,
+            int[] destination, int index) {
+        IntVector.fromArray(SPECIES, a, index).and(mask)
+                .or(IntVector.fromArray(SPECIES, b, index).and(mask.not()))
+                .intoArray(destination, index);
+    }
+}
@@ -0,0 +1,92 @@
+package ch.epfl.gameboj.component.lcd;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class VectorCompositorTest {
+    //Lines shorter than a vector, of whole vectors, and with remaining words
+    private static final int[] SIZES = { 32, 128, 160, 256 };
+    private static final int LINES = 50;
+
+    private static LcdLineBuffer randomLine(Random random, int size) {
+        LcdLineBuffer line = new LcdLineBuffer(size);
+        for (int i = 0; i < size / Byte.SIZE; ++i)
+            line.setBytes(i, random.nextInt(256), random.nextInt(256));
+        return line;
+    }
+
+    private static int[] randomWords(Random random, int size) {
+        int[] words = new int[size / Integer.SIZE];
+        for (int i = 0; i < words.length; ++i)
+            words[i] = random.nextInt();
+        return words;
+    }
+
+    /**
+     * Applies the given operation with both backends to the same random
+     * lines, and checks that the resulting lines are the same
+     */
+    private static void assertSameAsScalar(
+            BiConsumer<LineCompositor, LcdLineBuffer[]> operation) {
+        LineCompositor vector = new VectorCompositor();
+        Random random = new Random(2018);
+        for (int size : SIZES) {
+            for (int n = 0; n < LINES; ++n) {
+                long seed = random.nextLong();
+                LcdLineBuffer[] expected = {
+                        randomLine(new Random(seed), size),
+                        randomLine(new Random(~seed), size) };
+                LcdLineBuffer[] actual = {
+                        randomLine(new Random(seed), size),
+                        randomLine(new Random(~seed), size) };
+
+                operation.accept(LineCompositor.scalar(), expected);
+                operation.accept(vector, actual);
+                assertArrayEquals(expected[0].msbWords(),
+                        actual[0].msbWords());
+                assertArrayEquals(expected[0].lsbWords(),
+                        actual[0].lsbWords());
+                assertArrayEquals(expected[0].opacityWords(),
+                        actual[0].opacityWords());
+            }
+        }
+    }
+
+    @Test
+    void belowMatchesScalarBackend() {
+        assertSameAsScalar((c, l) -> c.below(l[0], l[1],
+                l[1].opacityWords()));
+        assertSameAsScalar((c, l) -> {
+            //The same random opacity for both backends
+            Random opacity = new Random(l[0].msbWords()[0]);
+            c.below(l[0], l[1], randomWords(opacity, l[0].size()));
+        });
+    }
+
+    @Test
+    void aboveAndBehindMatchScalarBackend() {
+        assertSameAsScalar((c, l) -> c.above(l[0], l[1]));
+        assertSameAsScalar((c, l) -> c.behind(l[0], l[1]));
+    }
+
+    @Test
+    void joinMatchesScalarBackendAtEveryIndex() {
+        for (int index = 0; index <= 256; ++index) {
+            int i = index;
+            assertSameAsScalar((c, l) ->
+                    c.join(l[0], l[1], Math.min(i, l[0].size())));
+        }
+    }
+
+    @Test
+    void mapColorsMatchesScalarBackendForEveryPalette() {
+        for (int palette = 0; palette < 256; ++palette) {
+            int p = palette;
+            assertSameAsScalar((c, l) -> c.mapColors(l[0], p));
+        }
+    }
+}
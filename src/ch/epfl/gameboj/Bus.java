@@ -2,25 +2,75 @@ package ch.epfl.gameboj;
 
 import ch.epfl.gameboj.component.Component;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
  * Class simulating the address and data buses interconnecting the GameBoy's
  * components.
+ * Accesses are dispatched through a table indexed by the 8 MSBs of the
+ * address, so that only the components mapped on that page are consulted.
+ * A page whose only component is plain memory, such as a RAM or a bank of a
+ * cartridge's ROM, can be mapped directly on that memory by its component,
+ * in which case it is accessed without consulting the component at all.
  * @author Andrew Dobis (Sciper: 272002)
  * @author Matthieu De Beule (Sciper: 269623)
  */
 public final class Bus {
-    private final ArrayList<Component> attachedComp = new ArrayList<>();
+    private static final int PAGE_BITS = Byte.SIZE;
+    //Size of the pages, the units in which memory can be mapped directly
+    public static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int NUMBER_OF_PAGES = 1 << (Short.SIZE - PAGE_BITS);
+    private static final Component[] NO_COMPONENTS = new Component[0];
+
+    private final Component[][] pages = new Component[NUMBER_OF_PAGES][];
+    //Memory on which each page is directly mapped, null if it isn't
+    private final ByteBuffer[] readPages = new ByteBuffer[NUMBER_OF_PAGES];
+    //Same as readPages, but only for the pages also written directly
+    private final ByteBuffer[] writePages = new ByteBuffer[NUMBER_OF_PAGES];
+    //Difference between the index in the memory and the address, per page
+    private final int[] pageOffsets = new int[NUMBER_OF_PAGES];
+
+    /**
+     * Constructs an empty bus
+     */
+    public Bus() {
+        Arrays.fill(pages, NO_COMPONENTS);
+    }
 
     /**
-     * Attaches the given component to the bus
+     * Attaches the given component to the bus, on every page covered by
+     * the address ranges it declares
      * @param component to attach to the bus
      */
     public void attach(Component component) {
         Objects.requireNonNull(component);
-        attachedComp.add(component);
+
+        int[] ranges = component.addressRanges();
+        Preconditions.checkArgument(ranges.length % 2 == 0);
+
+        boolean[] mapped = new boolean[NUMBER_OF_PAGES];
+        for (int i = 0; i < ranges.length; i += 2) {
+            int start = ranges[i];
+            int end = ranges[i + 1];
+            Preconditions.checkArgument(0 <= start && start <= end
+                    && end <= Component.ADDRESS_SPACE_END);
+
+            for (int a = start; a < end; a = (page(a) + 1) << PAGE_BITS)
+                mapped[page(a)] = true;
+        }
+
+        for (int p = 0; p < NUMBER_OF_PAGES; ++p) {
+            if (mapped[p]) {
+                Component[] comps = Arrays.copyOf(pages[p],
+                        pages[p].length + 1);
+                comps[comps.length - 1] = component;
+                pages[p] = comps;
+                //The new component must see the accesses to the page
+                unmapPage(p);
+            }
+        }
     }
 
     /**
@@ -30,30 +80,135 @@ public final class Bus {
      * @return value stored at address or 0xFF if no component has this value
      */
     public int read(int address) {
-        int value = 0xFF;
+        Preconditions.checkBits16(address);
 
-       Preconditions.checkBits16(address);
+        ByteBuffer direct = readPages[page(address)];
+        if (direct != null)
+            return Byte.toUnsignedInt(
+                    direct.get(address + pageOffsets[page(address)]));
 
-        for (Component component: attachedComp) {
-            int compValue =  component.read(address);
-            if (compValue!= Component.NO_DATA) {
+        for (Component component: pages[page(address)]) {
+            int compValue = component.read(address);
+            if (compValue != Component.NO_DATA) {
                 return compValue;
             }
         }
-        return value;
+        return 0xFF;
     }
 
     /**
-     * Writes the parameter data at the given address of each component attached
-     * to the bus.
+     * Writes the parameter data at the given address of each component mapped
+     * at this address on the bus.
      * @param address, where to write the data
      * @param data we want to write
      */
     public void write(int address, int data) {
         Preconditions.checkBits8(data);
         Preconditions.checkBits16(address);
-        for (Component component: attachedComp) {
+
+        ByteBuffer direct = writePages[page(address)];
+        if (direct != null) {
+            direct.put(address + pageOffsets[page(address)], (byte) data);
+            return;
+        }
+
+        for (Component component: pages[page(address)]) {
             component.write(address, data);
         }
     }
+
+    /**
+     * Returns the handle through which the given component maps memory
+     * directly on the pages it is attached to
+     * @param owner the component
+     * @return the direct mapping of the component
+     */
+    public DirectMapping directMapping(Component owner) {
+        return new DirectMapping(Objects.requireNonNull(owner));
+    }
+
+    /**
+     * Handle through which a component maps its memory directly on the bus.
+     * Only the pages to which the component is the only one attached are
+     * actually mapped, the other ones still being accessed through it.
+     */
+    public final class DirectMapping {
+        private final Component owner;
+
+        private DirectMapping(Component owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Maps the given memory on the pages between the given addresses:
+         * the byte at address start + i is the one at index + i in memory.
+         * The component must behave exactly like the memory on these pages,
+         * and must map them again whenever it stops doing so.
+         * @param start the first address, at the start of a page
+         * @param end the address following the range, at the start of a page
+         * @param memory the memory
+         * @param index the index in memory of the byte at address start
+         * @param writable whether the pages are also written directly
+         * @throws IllegalArgumentException if the addresses aren't at the
+         * start of a page, or if the memory is too small
+         */
+        public void map(int start, int end, ByteBuffer memory, int index,
+                boolean writable) {
+            checkPages(start, end);
+            Preconditions.checkArgument(0 <= index
+                    && index + (end - start) <= memory.limit());
+            Preconditions.checkArgument(!writable || !memory.isReadOnly());
+
+            for (int p = page(start); p < page(end); ++p) {
+                if (pages[p].length == 1 && pages[p][0] == owner) {
+                    readPages[p] = memory;
+                    writePages[p] = writable ? memory : null;
+                    pageOffsets[p] = index - start;
+                }
+            }
+        }
+
+        /**
+         * Stops mapping memory directly on the pages between the given
+         * addresses, which are accessed through the component again
+         * @param start the first address, at the start of a page
+         * @param end the address following the range, at the start of a page
+         * @throws IllegalArgumentException if the addresses aren't at the
+         * start of a page
+         */
+        public void unmap(int start, int end) {
+            checkPages(start, end);
+
+            for (int p = page(start); p < page(end); ++p) {
+                if (pages[p].length == 1 && pages[p][0] == owner)
+                    unmapPage(p);
+            }
+        }
+    }
+
+    /**
+     * Checks that the given range covers whole pages of the address space
+     */
+    private static void checkPages(int start, int end) {
+        Preconditions.checkArgument(0 <= start && start <= end
+                && end <= Component.ADDRESS_SPACE_END
+                && start % PAGE_SIZE == 0 && end % PAGE_SIZE == 0);
+    }
+
+    /**
+     * Stops mapping memory directly on the given page
+     */
+    private void unmapPage(int page) {
+        readPages[page] = null;
+        writePages[page] = null;
+    }
+
+    /**
+     * Returns the page containing the given address
+     * @param address a 16bit address
+     * @return the index of the page, i.e. the 8 MSBs of the address
+     */
+    private static int page(int address) {
+        return address >>> PAGE_BITS;
+    }
 }
@@ -1,5 +1,6 @@
 package ch.epfl.gameboj;
 
+import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Joypad;
 import ch.epfl.gameboj.component.Timer;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
@@ -9,6 +10,9 @@ import ch.epfl.gameboj.component.memory.BootRomController;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.RamController;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 
 import static ch.epfl.gameboj.AddressMap.*;
@@ -23,6 +27,10 @@ public class GameBoy {
     public static final long CYCLES_PER_SECOND = 0x100000; //2^20
     public static final double CYCLES_PER_NANOSECOND = CYCLES_PER_SECOND * 1e-9;
 
+    private static final int SNAPSHOT_MAGIC = 0x47424A53; //"GBJS"
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final int INITIAL_SNAPSHOT_SIZE = 1 << 16;
+
     private final Bus compsBus = new Bus();
     private final Ram workRam;
     private final RamController wRCont;
@@ -32,8 +40,17 @@ public class GameBoy {
     private final Timer timer;
     private final LcdController lcdCont;
     private final Joypad joypad;
+    private final Clocked[] clockedComps;
+    private final Clocked[] peripherals;
+    private final Stateful[] statefulComps;
+    private ByteBuffer snapshotBuffer;
+    //State saved before a restore, to undo it if the snapshot is corrupt
+    private ByteBuffer rollbackBuffer;
+    private final Metrics metrics;
 
     private long cycle;
+    //Number of cycles emulated, never restored from a snapshot
+    private long emulatedCycles;
 
     /**
      * Constructs a GameBoy
@@ -64,6 +81,16 @@ public class GameBoy {
 
         joypad = new Joypad(cpu);
         joypad.attachTo(compsBus);
+
+        //Order in which the components are driven during a cycle
+        clockedComps = new Clocked[] { timer, lcdCont, cpu };
+        peripherals = new Clocked[] { timer, lcdCont };
+        //Order in which the components are saved in a snapshot
+        statefulComps = new Stateful[] {
+                workRam, cpu, bootRomController, timer, lcdCont, joypad };
+        snapshotBuffer = ByteBuffer.allocate(INITIAL_SNAPSHOT_SIZE);
+        rollbackBuffer = ByteBuffer.allocate(INITIAL_SNAPSHOT_SIZE);
+        metrics = new Metrics(this);
     }
 
     /**
@@ -115,18 +142,140 @@ public class GameBoy {
     }
 
     /**
-     * Simulates the GameBoy until cycle - 1
+     * Returns the counters measuring the speed of this GameBoy
+     * @return the metrics of this GameBoy
+     */
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the number of cycles emulated since the creation of the
+     * GameBoy, which, unlike cycles(), doesn't go back when a snapshot is
+     * restored
+     */
+    long emulatedCycles() {
+        return emulatedCycles;
+    }
+
+    /**
+     * Simulates the GameBoy until cycle - 1, skipping the cycles during which
+     * all of the components are idle.
      * @param cycle count where we stop running
      */
     public void runUntil(long cycle) {
         Preconditions.checkArgument(this.cycle <= cycle);
+        if (Metrics.ENABLED)
+            emulatedCycles += cycle - this.cycle;
 
         while (this.cycle < cycle){
-            timer.cycle(this.cycle);
-            lcdCont.cycle(this.cycle);
-            cpu.cycle(this.cycle);
+            this.cycle = nextEventCycle(cycle);
+            if (this.cycle == cycle)
+                break;
+
+            for (Clocked c : clockedComps)
+                c.cycle(this.cycle);
 
             ++this.cycle;
         }
     }
+
+    /**
+     * Captures the whole state of the GameBoy, including its cartridge, in a
+     * versioned binary snapshot. Snapshots of a given GameBoy all have the
+     * same size and layout.
+     * @return the snapshot of the current state
+     */
+    public byte[] snapshot() {
+        //The timer and the LCD controller are only driven when a component
+        //has something to do, which depends on the cycles given to runUntil:
+        //they are brought up to date so that the snapshot only depends on the
+        //emulated state
+        if (cycle > 0) {
+            for (Clocked c : peripherals)
+                c.cycle(cycle - 1);
+        }
+
+        snapshotBuffer = saveState(snapshotBuffer);
+        return Arrays.copyOf(snapshotBuffer.array(),
+                snapshotBuffer.position());
+    }
+
+    /**
+     * Restores the state captured by the given snapshot, which must come
+     * from a GameBoy running the same cartridge.
+     * @param snapshot the snapshot to restore
+     * If the snapshot is invalid, the GameBoy is left unchanged.
+     * @throws IllegalArgumentException if the snapshot was not produced by
+     * snapshot, or by a different version of it, or is corrupt
+     */
+    public void restore(byte[] snapshot) {
+        ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+        Preconditions.checkArgument(snapshot.length >= 2 * Integer.BYTES
+                && buffer.getInt() == SNAPSHOT_MAGIC
+                && buffer.getInt() == SNAPSHOT_VERSION);
+
+        //The components can only detect a corruption while loading their
+        //state, so the current state is saved to be loaded back if they do
+        rollbackBuffer = saveState(rollbackBuffer);
+        try {
+            loadState(buffer);
+            Preconditions.checkArgument(!buffer.hasRemaining());
+        } catch (RuntimeException e) {
+            rollbackBuffer.flip();
+            rollbackBuffer.position(2 * Integer.BYTES);
+            loadState(rollbackBuffer);
+            throw e instanceof IllegalArgumentException
+                    ? e : new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Writes the state of the GameBoy, preceded by the header of the
+     * snapshots, in the given buffer, or in a bigger one if it is too small
+     * @param buffer the buffer, which is cleared first
+     * @return the buffer containing the state
+     */
+    private ByteBuffer saveState(ByteBuffer buffer) {
+        while (true) {
+            try {
+                buffer.clear();
+                buffer.putInt(SNAPSHOT_MAGIC)
+                        .putInt(SNAPSHOT_VERSION)
+                        .putLong(cycle);
+                for (Stateful s : statefulComps)
+                    s.saveState(buffer);
+                return buffer;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Loads the state of the GameBoy from the given buffer, positioned after
+     * the header of the snapshot
+     * @param buffer the buffer
+     */
+    private void loadState(ByteBuffer buffer) {
+        cycle = buffer.getLong();
+        for (Stateful s : statefulComps)
+            s.loadState(buffer);
+        cpu.restoredAt(cycle);
+    }
+
+    /**
+     * Returns the first cycle, before the given limit, during which at least
+     * one of the clocked components has something to do. The CPU is given
+     * the next event of the other components, so that it can skip the
+     * iterations of an idle loop until then.
+     * @param limit cycle that should not be exceeded
+     * @return the index of the next non idle cycle, or limit if there is none
+     */
+    private long nextEventCycle(long limit) {
+        long next = limit;
+        for (Clocked c : peripherals)
+            next = Math.min(next, c.nextEventCycle(this.cycle));
+        return Math.min(next, cpu.nextEventCycle(this.cycle, next));
+    }
 }
@@ -0,0 +1,225 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Runs many independent GameBoy sessions in a single JVM.
+ *
+ * Every session runs its own GameBoy in a task of a work-stealing pool,
+ * whose parallelism bounds the number of sessions running at the same time.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+public final class GameBoyFleet implements AutoCloseable {
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a fleet running at most the given number of sessions at
+     * the same time
+     * @param parallelism the maximum number of sessions running at once
+     * @throws IllegalArgumentException if parallelism isn't strictly positive
+     */
+    public GameBoyFleet(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0);
+        executor = Executors.newWorkStealingPool(parallelism);
+    }
+
+    /**
+     * Runs all the given sessions, and waits until they are all finished
+     * @param sessions the sessions to run
+     * @param <R> the type of the sessions' results
+     * @return the outcomes of the sessions, in the order of the sessions
+     * @throws InterruptedException if interrupted while waiting
+     * @throws Error any error other than a stack overflow thrown by a
+     * session, such as an OutOfMemoryError
+     */
+    public <R> List<Outcome<R>> runAll(List<Session<R>> sessions)
+            throws InterruptedException {
+        List<Callable<Outcome<R>>> tasks = new ArrayList<>(sessions.size());
+        for (Session<R> session : sessions)
+            tasks.add(session::run);
+
+        List<Outcome<R>> outcomes = new ArrayList<>(sessions.size());
+        for (Future<Outcome<R>> future : executor.invokeAll(tasks)) {
+            try {
+                outcomes.add(future.get());
+            } catch (ExecutionException e) {
+                //Session.run only lets the errors of the VM through
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw new Error(e);
+            }
+        }
+        return Collections.unmodifiableList(outcomes);
+    }
+
+    /**
+     * Stops the fleet, waiting for the running sessions to finish. If
+     * interrupted while waiting, the running sessions are interrupted too,
+     * which ends them after their current frame with an
+     * InterruptedException, and the interrupt status of the current thread
+     * is set again once they are finished.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.DAYS))
+                    break;
+            } catch (InterruptedException e) {
+                if (!interrupted)
+                    executor.shutdownNow();
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * A session, running a GameBoy with a given cartridge for at most a given
+     * number of cycles, then computing a result from its final state.
+     * @param <R> the type of the session's result
+     */
+    public static final class Session<R> {
+        private final Callable<Cartridge> cartridge;
+        private final long cycleBudget;
+        private final Predicate<GameBoy> onFrame;
+        private final Function<GameBoy, R> result;
+
+        /**
+         * Constructs a session
+         * @param cartridge provides the cartridge of the session's GameBoy,
+         *                  for example Cartridge.ofFile
+         * @param cycleBudget the maximum number of cycles to run
+         * @param onFrame called after every frame, may interact with the
+         *                GameBoy and returns true to end the session early
+         * @param result computes the result from the GameBoy's final state
+         * @throws IllegalArgumentException if the budget is negative
+         */
+        public Session(Callable<Cartridge> cartridge, long cycleBudget,
+                Predicate<GameBoy> onFrame, Function<GameBoy, R> result) {
+            Preconditions.checkArgument(cycleBudget >= 0);
+
+            this.cartridge = Objects.requireNonNull(cartridge);
+            this.cycleBudget = cycleBudget;
+            this.onFrame = Objects.requireNonNull(onFrame);
+            this.result = Objects.requireNonNull(result);
+        }
+
+        /**
+         * Constructs a session running for exactly the given number of cycles
+         * @param cartridge provides the cartridge of the session's GameBoy
+         * @param cycleBudget the number of cycles to run
+         * @param result computes the result from the GameBoy's final state
+         */
+        public Session(Callable<Cartridge> cartridge, long cycleBudget,
+                Function<GameBoy, R> result) {
+            this(cartridge, cycleBudget, g -> false, result);
+        }
+
+        /**
+         * Runs the session, frame by frame, until it is finished or the
+         * thread running it is interrupted. The exceptions thrown by the
+         * session and stack overflows end it and are kept in its outcome,
+         * interruptions as an InterruptedException. The other errors are
+         * thrown again, as the VM may no longer be able to run sessions.
+         * @return the outcome of the session
+         */
+        private Outcome<R> run() {
+            long start = System.nanoTime();
+            GameBoy gameBoy = null;
+            try {
+                gameBoy = new GameBoy(cartridge.call());
+                boolean finished = false;
+                while (!finished && gameBoy.cycles() < cycleBudget) {
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                    gameBoy.runUntil(Math.min(cycleBudget,
+                            gameBoy.cycles() + LcdController.IMAGE_CYCLES));
+                    finished = onFrame.test(gameBoy);
+                }
+                return new Outcome<>(result.apply(gameBoy), null,
+                        gameBoy.cycles(), System.nanoTime() - start);
+            } catch (Exception | StackOverflowError e) {
+                return new Outcome<>(null, e,
+                        gameBoy == null ? 0 : gameBoy.cycles(),
+                        System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * The outcome of a session: its result, or the throwable that ended it
+     * @param <R> the type of the session's result
+     */
+    public static final class Outcome<R> {
+        private final R result;
+        private final Throwable failure;
+        private final long cycles;
+        private final long nanos;
+
+        private Outcome(R result, Throwable failure, long cycles, long nanos) {
+            this.result = result;
+            this.failure = failure;
+            this.cycles = cycles;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return true iff the session ended without throwing anything
+         */
+        public boolean succeeded() {
+            return failure == null;
+        }
+
+        /**
+         * @return the result of the session
+         * @throws IllegalStateException if the session failed
+         */
+        public R result() {
+            if (!succeeded())
+                throw new IllegalStateException(failure);
+            return result;
+        }
+
+        /**
+         * @return the exception or error that ended the session, or null if
+         * it succeeded
+         */
+        public Throwable failure() {
+            return failure;
+        }
+
+        /**
+         * @return the number of cycles the session ran
+         */
+        public long cycles() {
+            return cycles;
+        }
+
+        /**
+         * @return the duration of the session, in nanoseconds
+         */
+        public long nanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.Objects;
+
+/**
+ * Counters measuring the activity and speed of a GameBoy.
+ *
+ * The counters are plain fields of the components, incremented as they run
+ * and never reset, not even when a snapshot is restored. They are read
+ * without synchronization, so a sample taken from another thread than the
+ * one running the GameBoy may be slightly out of date. Counting can be
+ * disabled altogether with the system property gameboj.metrics.disabled, in
+ * which case the JIT removes it from the emulation.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+public final class Metrics {
+    /**
+     * True iff the components count their activity
+     */
+    public static final boolean ENABLED =
+            !Boolean.getBoolean("gameboj.metrics.disabled");
+
+    private static final double NANOSECONDS_PER_SECOND = 1e9;
+
+    private final GameBoy gameBoy;
+    private Sample lastEventSample;
+
+    /**
+     * Constructs the metrics of the given GameBoy
+     * @param gameBoy the measured GameBoy
+     */
+    Metrics(GameBoy gameBoy) {
+        this.gameBoy = Objects.requireNonNull(gameBoy);
+    }
+
+    /**
+     * Reads the current values of the counters
+     * @return a sample of the counters
+     */
+    public Sample sample() {
+        Cpu cpu = gameBoy.cpu();
+        long[] interrupts = new long[Interrupt.values().length];
+        for (Interrupt i : Interrupt.values())
+            interrupts[i.index()] = cpu.interruptsServiced(i);
+
+        return new Sample(System.nanoTime(), gameBoy.emulatedCycles(),
+                cpu.instructionsRetired(),
+                gameBoy.lcdController().framesProduced(), cpu.haltedCycles(),
+                cpu.idleLoopCycles(), interrupts);
+    }
+
+    /**
+     * Records a JFR event with the speed of the GameBoy since the previous
+     * call, if such events are enabled in a running recording. Meant to be
+     * called periodically, for example once per second.
+     */
+    public void commitEvent() {
+        MetricsEvent event = new MetricsEvent();
+        if (!event.shouldCommit())
+            return;
+
+        Sample current = sample();
+        Sample last = lastEventSample;
+        if (last != null) {
+            event.cyclesPerSecond = current.cyclesPerSecondSince(last);
+            event.framesPerSecond = current.framesPerSecondSince(last);
+            event.instructions = current.instructions() - last.instructions();
+            event.haltedCycles = current.haltedCycles() - last.haltedCycles();
+            event.commit();
+        }
+        lastEventSample = current;
+    }
+
+    /**
+     * Values of the counters at a given time
+     */
+    public static final class Sample {
+        private final long nanoTime;
+        private final long cycles;
+        private final long instructions;
+        private final long frames;
+        private final long haltedCycles;
+        private final long idleLoopCycles;
+        private final long[] interrupts;
+
+        private Sample(long nanoTime, long cycles, long instructions,
+                long frames, long haltedCycles, long idleLoopCycles,
+                long[] interrupts) {
+            this.nanoTime = nanoTime;
+            this.cycles = cycles;
+            this.instructions = instructions;
+            this.frames = frames;
+            this.haltedCycles = haltedCycles;
+            this.idleLoopCycles = idleLoopCycles;
+            this.interrupts = interrupts;
+        }
+
+        /**
+         * @return the time at which the sample was taken, as given by
+         * System.nanoTime
+         */
+        public long nanoTime() {
+            return nanoTime;
+        }
+
+        /**
+         * @return the number of cycles emulated
+         */
+        public long cycles() {
+            return cycles;
+        }
+
+        /**
+         * @return the number of instructions executed by the CPU
+         */
+        public long instructions() {
+            return instructions;
+        }
+
+        /**
+         * @return the number of frames completed by the LCD controller
+         */
+        public long frames() {
+            return frames;
+        }
+
+        /**
+         * @return the number of cycles the CPU spent halted
+         */
+        public long haltedCycles() {
+            return haltedCycles;
+        }
+
+        /**
+         * @return the number of cycles skipped in idle loops of the CPU
+         */
+        public long idleLoopCycles() {
+            return idleLoopCycles;
+        }
+
+        /**
+         * Returns the number of times the given interruption was handled
+         * @param i the interruption
+         * @return the number of times its handler was called
+         */
+        public long interrupts(Interrupt i) {
+            return interrupts[i.index()];
+        }
+
+        /**
+         * Computes the number of cycles emulated per second of real time
+         * between the given earlier sample and this one
+         * @param earlier a sample taken before this one
+         * @return the emulation speed, in cycles per second
+         */
+        public double cyclesPerSecondSince(Sample earlier) {
+            return rate(cycles - earlier.cycles, earlier);
+        }
+
+        /**
+         * Computes the number of frames produced per second of real time
+         * between the given earlier sample and this one
+         * @param earlier a sample taken before this one
+         * @return the emulation speed, in frames per second
+         */
+        public double framesPerSecondSince(Sample earlier) {
+            return rate(frames - earlier.frames, earlier);
+        }
+
+        private double rate(long count, Sample earlier) {
+            long nanos = nanoTime - earlier.nanoTime;
+            return nanos <= 0 ? 0 : count * NANOSECONDS_PER_SECOND / nanos;
+        }
+    }
+
+    @Name("ch.epfl.gameboj.Metrics")
+    @Label("GameBoy Metrics")
+    @Category("Gameboj")
+    @Description("Emulation speed of a GameBoy since the previous event")
+    static final class MetricsEvent extends Event {
+        @Label("Cycles per Second")
+        double cyclesPerSecond;
+
+        @Label("Frames per Second")
+        double framesPerSecond;
+
+        @Label("Instructions")
+        long instructions;
+
+        @Label("Halted Cycles")
+        long haltedCycles;
+    }
+}
@@ -3,7 +3,9 @@ package ch.epfl.gameboj;
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 
-public final class RegisterFile<E extends Register> {
+import java.nio.ByteBuffer;
+
+public final class RegisterFile<E extends Register> implements Stateful {
     private final byte[] allRegs;
 
     /**
@@ -55,6 +57,16 @@ public final class RegisterFile<E extends Register> {
         this.set(reg, Bits.set(get(reg), bit.index(), newValue));
     }
 
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put(allRegs);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        buffer.get(allRegs);
+    }
+
 
 
 }
@@ -0,0 +1,223 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Bounded history of the states of a GameBoy, allowing to go back in time.
+ *
+ * A snapshot of the GameBoy is taken every given number of frames. Only the
+ * latest snapshot is kept in full: every older one is stored as the
+ * difference with the following one, xor-ed and run-length encoded. As
+ * little changes between two frames, these differences are very small.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+public final class RewindBuffer {
+    //Minimum number of identical bytes ending a run of changed bytes
+    private static final int MIN_UNCHANGED_RUN = 4;
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MORE = 0x80;
+
+    private final GameBoy gameBoy;
+    private final long period;
+    private final byte[][] deltas;
+
+    //deltas[(first + i) % length], for i < count, are the deltas from the
+    //oldest to the newest
+    private int first;
+    private int count;
+
+    private byte[] latest;
+    //Cycle of the GameBoy at which the latest snapshot was taken
+    private long latestCycles;
+    private byte[] scratch;
+    private long nextCaptureCycle;
+
+    /**
+     * Constructs a rewind buffer for the given GameBoy
+     * @param gameBoy the GameBoy whose states are recorded
+     * @param capacity the maximum number of states that can be rewound
+     * @param framesPerSnapshot the number of frames between two snapshots
+     * @throws IllegalArgumentException if the capacity or the number of
+     * frames is not strictly positive
+     */
+    public RewindBuffer(GameBoy gameBoy, int capacity, int framesPerSnapshot) {
+        Preconditions.checkArgument(capacity > 0 && framesPerSnapshot > 0);
+
+        this.gameBoy = Objects.requireNonNull(gameBoy);
+        this.period = (long) framesPerSnapshot * LcdController.IMAGE_CYCLES;
+        deltas = new byte[capacity][];
+        clear();
+    }
+
+    /**
+     * Takes a snapshot of the GameBoy if at least the given number of frames
+     * were emulated since the last one. Should be called after every call to
+     * GameBoy.runUntil.
+     */
+    public void record() {
+        if (gameBoy.cycles() < nextCaptureCycle)
+            return;
+
+        byte[] snapshot = gameBoy.snapshot();
+        if (latest != null && latest.length == snapshot.length) {
+            push(encodeDelta(snapshot, latest));
+        } else {
+            first = 0;
+            count = 0;
+        }
+        latest = snapshot;
+        latestCycles = gameBoy.cycles();
+        nextCaptureCycle = gameBoy.cycles() + period;
+    }
+
+    /**
+     * Brings the GameBoy back to the previous recorded state, the current
+     * state being forgotten. That state is the latest one recorded if the
+     * GameBoy ran since it was recorded or restored, and the one before it
+     * otherwise.
+     * @return false iff there was no previous state to go back to
+     */
+    public boolean rewind() {
+        if (latest == null || (count == 0 && !ranSinceLatest()))
+            return false;
+
+        if (!ranSinceLatest()) {
+            int newest = (first + count - 1) % deltas.length;
+            applyDelta(deltas[newest], latest);
+            deltas[newest] = null;
+            --count;
+        }
+
+        gameBoy.restore(latest);
+        latestCycles = gameBoy.cycles();
+        nextCaptureCycle = gameBoy.cycles() + period;
+        return true;
+    }
+
+    /**
+     * @return the number of states the GameBoy can currently be brought
+     * back to
+     */
+    public int size() {
+        return latest != null && ranSinceLatest() ? count + 1 : count;
+    }
+
+    /**
+     * Forgets all the recorded states
+     */
+    public void clear() {
+        Arrays.fill(deltas, null);
+        first = 0;
+        count = 0;
+        latest = null;
+        nextCaptureCycle = gameBoy.cycles();
+    }
+
+    /**
+     * Determines whether the GameBoy ran since the latest state was recorded
+     * or restored, and so is no longer in that state
+     */
+    private boolean ranSinceLatest() {
+        return gameBoy.cycles() != latestCycles;
+    }
+
+    /**
+     * Adds the given delta as the newest one, forgetting the oldest one if
+     * the buffer is full
+     */
+    private void push(byte[] delta) {
+        if (count == deltas.length) {
+            deltas[first] = null;
+            first = (first + 1) % deltas.length;
+            --count;
+        }
+        deltas[(first + count) % deltas.length] = delta;
+        ++count;
+    }
+
+    /**
+     * Encodes the xor of the two given arrays, of the same size, as a sequence
+     * of pairs of runs: the number of unchanged bytes, then the number of
+     * changed bytes followed by their xor.
+     */
+    private byte[] encodeDelta(byte[] current, byte[] previous) {
+        int length = current.length;
+        if (scratch == null || scratch.length < 2 * length + 2 * Long.BYTES)
+            scratch = new byte[2 * length + 2 * Long.BYTES];
+
+        int out = 0;
+        int i = 0;
+        while (i < length) {
+            int unchangedStart = i;
+            while (i < length && current[i] == previous[i])
+                ++i;
+            out = putVarint(scratch, out, i - unchangedStart);
+
+            int changedStart = i;
+            int unchanged = 0;
+            while (i < length && unchanged < MIN_UNCHANGED_RUN) {
+                unchanged = current[i] == previous[i] ? unchanged + 1 : 0;
+                ++i;
+            }
+            if (unchanged == MIN_UNCHANGED_RUN)
+                i -= unchanged;
+
+            out = putVarint(scratch, out, i - changedStart);
+            for (int j = changedStart; j < i; ++j)
+                scratch[out++] = (byte) (current[j] ^ previous[j]);
+        }
+        return Arrays.copyOf(scratch, out);
+    }
+
+    /**
+     * Applies the given delta to the given array, in place
+     */
+    private static void applyDelta(byte[] delta, byte[] target) {
+        int in = 0;
+        int position = 0;
+        int[] value = new int[1];
+        while (in < delta.length) {
+            in = getVarint(delta, in, value);
+            position += value[0];
+
+            in = getVarint(delta, in, value);
+            for (int j = 0; j < value[0]; ++j)
+                target[position++] ^= delta[in++];
+        }
+    }
+
+    /**
+     * Writes the given positive value as a varint at the given index
+     * @return the index following the varint
+     */
+    private static int putVarint(byte[] data, int index, int value) {
+        while (value >= VARINT_MORE) {
+            data[index++] = (byte) (value | VARINT_MORE);
+            value >>>= VARINT_BITS;
+        }
+        data[index++] = (byte) value;
+        return index;
+    }
+
+    /**
+     * Reads the varint at the given index, storing it in value[0]
+     * @return the index following the varint
+     */
+    private static int getVarint(byte[] data, int index, int[] value) {
+        int result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = Byte.toUnsignedInt(data[index++]);
+            result |= (b & ~VARINT_MORE) << shift;
+            shift += VARINT_BITS;
+        } while ((b & VARINT_MORE) != 0);
+        value[0] = result;
+        return index;
+    }
+}
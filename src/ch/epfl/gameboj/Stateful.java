@@ -0,0 +1,29 @@
+package ch.epfl.gameboj;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface implemented by all the parts of the GameBoy whose state is
+ * captured by a snapshot.
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+public interface Stateful {
+
+    /**
+     * Writes the whole state of the object at the position of the given
+     * buffer, advancing its position.
+     * @param buffer the buffer in which to write the state
+     */
+    public abstract void saveState(ByteBuffer buffer);
+
+    /**
+     * Replaces the state of the object by the one read at the position of the
+     * given buffer, as written by saveState, advancing its position.
+     * @param buffer the buffer from which to read the state
+     * @throws java.nio.BufferUnderflowException if the buffer is too short
+     * @throws IllegalArgumentException if the state read is not valid
+     */
+    public abstract void loadState(ByteBuffer buffer);
+
+}
@@ -4,20 +4,29 @@ import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.cpu.Alu;
 
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Class representing a bit vector of bit size >= the size of an int.
  * This class offers generalized versions the standard bit operations.
  *
+ * The bits are stored in longs, two 32bit elements per long, the upper half
+ * of the last long being 0 when the size isn't a multiple of 64. Every
+ * operation returns a new vector, so that a BitVector never changes once
+ * built.
+ *
  * @author Matthieu De Beule (Sciper: 269623)
  * @author Andrew Dobis (Sciper: 272002)
  */
 public final class  BitVector {
-    private static final int FULL_INT = 0xFFFF_FFFF;
+    private static final long FULL_LONG = 0xFFFF_FFFF_FFFF_FFFFL;
+    private static final long LOW_HALF = 0xFFFF_FFFFL;
     private static final int NUMBER_OF_BYTES = 4;
     private static final int VECTOR_COMP_SIZE = Integer.SIZE;
 
-    private final int[] bitVector;
+    private final long[] bitVector;
+    //Number of 32bit elements
+    private final int length;
 
 
     /**
@@ -28,10 +37,13 @@ public final class  BitVector {
     public BitVector(int size, boolean value) {
 
         Preconditions.checkArgument(size % VECTOR_COMP_SIZE == 0 && size >= 0);
-        bitVector = new int[size / VECTOR_COMP_SIZE];
+        length = size / VECTOR_COMP_SIZE;
+        bitVector = new long[longsFor(length)];
 
-        if (value)
-            Arrays.fill(bitVector, FULL_INT);
+        if (value) {
+            Arrays.fill(bitVector, FULL_LONG);
+            clearPadding();
+        }
     }
 
     /**
@@ -44,28 +56,32 @@ public final class  BitVector {
 
     /**
      * Private constructor for BitVector allowing to construct a BitVector
-     * from an integer array.
-     * @param data the integer array used to construct the BitVector
+     * from an array of 32bit elements stored in longs.
+     * @param data the words used to construct the BitVector, whose padding
+     *             must be 0
      */
-    private BitVector(int[] data) {
+    private BitVector(long[] data, int length) {
         bitVector = data;
+        this.length = length;
     }
 
     /**
      * Getter allowing access to the values stored in bitVector
-     * @return a copy of the attribute bitVector.
+     * @return a copy of the bits of the BitVector, as an array of ints.
      */
     public int[] getData() {
-        int[] data = Arrays.copyOf(bitVector, bitVector.length);
+        int[] data = new int[length];
+        for (int i = 0; i < length; ++i)
+            data[i] = element(i);
         return data;
     }
 
     /**
      * Getter allowing access to the number of ints stored in the BitVector
-     * @return the length of the int array bitvector
+     * @return the number of 32bit elements of the BitVector
      */
     public int length() {
-        return bitVector.length;
+        return length;
     }
 
     /**
@@ -73,7 +89,7 @@ public final class  BitVector {
      * @return the size of the BitVector
      */
     public int size(){
-        return bitVector.length * VECTOR_COMP_SIZE;
+        return length * VECTOR_COMP_SIZE;
     }
 
     /**
@@ -83,7 +99,7 @@ public final class  BitVector {
      */
     public boolean testBit(int index) {
         Preconditions.checkArgument(index >= 0 && index < size());
-        return Bits.test(bitVector[index / VECTOR_COMP_SIZE], index % VECTOR_COMP_SIZE);
+        return (bitVector[index / Long.SIZE] & 1L << index) != 0;
     }
 
     /**
@@ -91,12 +107,12 @@ public final class  BitVector {
      * @return complement of BitVector
      */
     public BitVector not() {
-
-        int [] notBitVector = new int[bitVector.length];
-        for(int i = 0; i < bitVector.length; i++){
-            notBitVector[i] = ~bitVector[i];
-        }
-        return new BitVector(notBitVector);
+        BitVector result = copy();
+        long[] data = result.bitVector;
+        for (int i = 0; i < data.length; ++i)
+            data[i] = ~data[i];
+        result.clearPadding();
+        return result;
     }
 
     /**
@@ -104,14 +120,12 @@ public final class  BitVector {
      * @return the conjunction of the two BitVectors
      */
     public BitVector and(BitVector that) {
-        Preconditions.checkArgument( this.size() == that.size());
+        Preconditions.checkArgument(this.size() == that.size());
 
-        int[] result = new int[bitVector.length];
-        int[] thatData = that.bitVector;
-        for(int i = 0; i < bitVector.length; ++i) {
-            result[i] = bitVector[i] & thatData[i];
-        }
-        return new BitVector(result);
+        long[] result = new long[bitVector.length];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = bitVector[i] & that.bitVector[i];
+        return new BitVector(result, length);
     }
 
     /**
@@ -119,14 +133,72 @@ public final class  BitVector {
      * @return the disjunction of the two BitVectors
      */
     public BitVector or(BitVector that) {
-        Preconditions.checkArgument( this.size() == that.size());
+        Preconditions.checkArgument(this.size() == that.size());
 
-        int[] result = new int[bitVector.length];
-        int[] thatData = that.getData();
-        for(int i = 0; i < bitVector.length; ++i) {
-            result[i] = bitVector[i] | thatData[i];
-        }
-        return new BitVector(result);
+        long[] result = new long[bitVector.length];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = bitVector[i] | that.bitVector[i];
+        return new BitVector(result, length);
+    }
+
+    /**
+     * Multiplexes two BitVectors: every bit of the result is the bit of a
+     * where the mask is 1, and the bit of b where it is 0. This is the same
+     * as mask.and(a).or(mask.not().and(b)), with a single allocation.
+     * @param mask selects the bits taken from a
+     * @param a the BitVector whose bits are taken where the mask is 1
+     * @param b the BitVector whose bits are taken where the mask is 0
+     * @return the multiplexed BitVector
+     * @throws IllegalArgumentException if the three BitVectors don't have the
+     * same size
+     */
+    public static BitVector select(BitVector mask, BitVector a, BitVector b) {
+        Preconditions.checkArgument(mask.size() == a.size()
+                && mask.size() == b.size());
+
+        long[] m = mask.bitVector;
+        long[] result = new long[m.length];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = (a.bitVector[i] & m[i]) | (b.bitVector[i] & ~m[i]);
+        return new BitVector(result, mask.length);
+    }
+
+    /**
+     * @return a copy of this BitVector, which may be modified
+     */
+    private BitVector copy() {
+        return new BitVector(bitVector.clone(), length);
+    }
+
+    /**
+     * Returns the 32bit element at the given index
+     */
+    private int element(int index) {
+        return (int) (bitVector[index / 2] >>> (index % 2) * VECTOR_COMP_SIZE);
+    }
+
+    /**
+     * Sets the 32bit element at the given index of the given words
+     */
+    private static void setElement(long[] words, int index, int value) {
+        int shift = (index % 2) * VECTOR_COMP_SIZE;
+        words[index / 2] = (words[index / 2] & ~(LOW_HALF << shift))
+                | (value & LOW_HALF) << shift;
+    }
+
+    /**
+     * Returns the number of longs storing the given number of 32bit elements
+     */
+    private static int longsFor(int length) {
+        return (length + 1) / 2;
+    }
+
+    /**
+     * Sets the upper half of the last long to 0 if it isn't used
+     */
+    private void clearPadding() {
+        if (length % 2 != 0)
+            bitVector[bitVector.length - 1] &= LOW_HALF;
     }
 
     /**
@@ -146,12 +218,12 @@ public final class  BitVector {
         if (type){
             //multiple of 32
             if(extractStart == 0){
-                return bitVector[Math.floorMod(index/VECTOR_COMP_SIZE, length())];
+                return element(Math.floorMod(index/VECTOR_COMP_SIZE, length()));
             }
             //not a multiple of 32
-            return (bitVector[Math.floorMod(firstPart + 1, bitVector.length)]
+            return (element(Math.floorMod(firstPart + 1, length))
                     << VECTOR_COMP_SIZE - extractStart)
-                    | Bits.extract(bitVector[Math.floorMod(firstPart, bitVector.length)],
+                    | Bits.extract(element(Math.floorMod(firstPart, length)),
                     extractStart, VECTOR_COMP_SIZE - extractStart);
         }
 
@@ -159,7 +231,7 @@ public final class  BitVector {
         //zero extended extraction
         if (extractStart == 0){
             if (firstPart >= 0 && firstPart < length()) {
-                return bitVector[index / VECTOR_COMP_SIZE];
+                return element(index / VECTOR_COMP_SIZE);
             } else {
                 return 0;
             }
@@ -168,13 +240,13 @@ public final class  BitVector {
         if(firstPart < -1 || firstPart >= length()) {
             return 0;
         } else if(firstPart == -1) {
-            return bitVector[0] << VECTOR_COMP_SIZE - extractStart;
+            return element(0) << VECTOR_COMP_SIZE - extractStart;
         } else if (firstPart + 1 < length()) {
-            return (bitVector[firstPart + 1] << VECTOR_COMP_SIZE - extractStart)
-                    | Bits.extract(bitVector[firstPart], extractStart,
+            return (element(firstPart + 1) << VECTOR_COMP_SIZE - extractStart)
+                    | Bits.extract(element(firstPart), extractStart,
                     VECTOR_COMP_SIZE - extractStart);
         } else if (firstPart + 1 == length()){
-            return Bits.extract(bitVector[firstPart], extractStart,
+            return Bits.extract(element(firstPart), extractStart,
                     VECTOR_COMP_SIZE - extractStart);
         }
         return 0;
@@ -191,11 +263,12 @@ public final class  BitVector {
      */
     private BitVector extract(int startIndex, int size, boolean type) {
         int length = Math.floorDiv(size, VECTOR_COMP_SIZE);
-        int[] data = new int[length];
+        long[] data = new long[longsFor(length)];
         for (int i = 0; i < length; ++i)
-            data[i] = extractElement(startIndex + VECTOR_COMP_SIZE * i, type);
+            setElement(data, i,
+                    extractElement(startIndex + VECTOR_COMP_SIZE * i, type));
 
-        return new BitVector(data);
+        return new BitVector(data, length);
     }
 
     /**
@@ -235,9 +308,10 @@ public final class  BitVector {
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
-        for (int aBitVector : bitVector) {
+        for (int i = 0; i < length; ++i) {
+            int anElement = element(i);
             for (int j = 0; j < VECTOR_COMP_SIZE; ++j) {
-                str.append(Bits.extract(aBitVector, j, 1));
+                str.append(Bits.extract(anElement, j, 1));
             }
         }
         return str.reverse().toString();
@@ -253,7 +327,8 @@ public final class  BitVector {
         if (that instanceof BitVector) {
             BitVector thatBv = (BitVector) that;
 
-            return Arrays.equals(bitVector, thatBv.getData());
+            return length == thatBv.length
+                    && Arrays.equals(bitVector, thatBv.bitVector);
         }
         return false;
     }
@@ -263,7 +338,8 @@ public final class  BitVector {
      */
     public final static class Builder {
 
-        private int[] buildingBitVector;
+        private long[] buildingBitVector;
+        private final int length;
 
         /**
          * Make builder of a given size
@@ -275,7 +351,8 @@ public final class  BitVector {
                     && size >= 0);
 
 
-            buildingBitVector = new int[size/ VECTOR_COMP_SIZE];
+            length = size / VECTOR_COMP_SIZE;
+            buildingBitVector = new long[longsFor(length)];
         }
 
         /**
@@ -290,14 +367,31 @@ public final class  BitVector {
             if (buildingBitVector == null){
                 throw new IllegalStateException();
             }
-            if (index > (buildingBitVector.length * NUMBER_OF_BYTES) || index < 0) {
+            if (index >= (length * NUMBER_OF_BYTES) || index < 0) {
                 throw new IndexOutOfBoundsException();
             }
 
-            buildingBitVector[index / NUMBER_OF_BYTES] =
-                    (~(Alu.MAX_8BITS << (index % NUMBER_OF_BYTES) * Byte.SIZE)
-                            & buildingBitVector[index / NUMBER_OF_BYTES])
-                            | value << ((index % NUMBER_OF_BYTES) * Byte.SIZE);
+            int shift = (index % Long.BYTES) * Byte.SIZE;
+            buildingBitVector[index / Long.BYTES] =
+                    (~((long) Alu.MAX_8BITS << shift)
+                            & buildingBitVector[index / Long.BYTES])
+                            | (long) value << shift;
+            return this;
+        }
+
+        /**
+         * Set the 32bit element at given index with given value
+         * @param index of the 32bit element to be set
+         * @param value of the element to set
+         * @return a modified version of the builder.
+         */
+        public Builder setInt(int index, int value) {
+            if (buildingBitVector == null){
+                throw new IllegalStateException();
+            }
+            Objects.checkIndex(index, length);
+
+            setElement(buildingBitVector, index, value);
             return this;
         }
 
@@ -310,7 +404,8 @@ public final class  BitVector {
             if (buildingBitVector == null){
                 throw new IllegalStateException();
             }
-            BitVector builtBitVector = new BitVector(buildingBitVector);
+            BitVector builtBitVector = new BitVector(buildingBitVector,
+                    length);
             buildingBitVector = null;
 
             return builtBitVector;
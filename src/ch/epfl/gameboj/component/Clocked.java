@@ -12,4 +12,17 @@ public interface Clocked {
      */
     public abstract void cycle(long cycle);
 
-}
\ No newline at end of file
+    /**
+     * Returns the first cycle, starting from the given one, during which the
+     * component may have something to do, assuming that its state is not
+     * modified in the meantime. Calling cycle for any earlier cycle must have
+     * no effect. By default, a component must be driven on every cycle.
+     * @param cycle the index of the current cycle
+     * @return the index of the next cycle where the component is not idle,
+     * or Long.MAX_VALUE if it is idle until its state is modified.
+     */
+    public default long nextEventCycle(long cycle) {
+        return cycle;
+    }
+
+}
@@ -9,6 +9,7 @@ import ch.epfl.gameboj.Bus;
  */
 public interface Component {
     public static final int NO_DATA = 0x100;
+    public static final int ADDRESS_SPACE_END = 0x10000;
 
     /**
      * Returns the byte stored at the given address
@@ -24,6 +25,16 @@ public interface Component {
      */
     public abstract void write(int address, int data);
 
+    /**
+     * Returns the address ranges to which the component responds, as
+     * consecutive pairs of start (included) and end (excluded) addresses.
+     * By default a component is mapped on the whole address space.
+     * @return an array containing the start and end of each range
+     */
+    public default int[] addressRanges() {
+        return new int[] { 0, ADDRESS_SPACE_END };
+    }
+
     /**
      * Attaches the component to the given bus
      * @param bus to attach to
@@ -2,17 +2,19 @@ package ch.epfl.gameboj.component;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.Stateful;
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
  * @author Andrew Dobis (Sciper: 272002)
  * Simulates the GameBoy's Joypad
  */
-public class Joypad implements Component {
+public class Joypad implements Component, Stateful {
     private final static int LINE0_BIT = 4;
     private final static int LINE1_BIT = 5;
     private final static int MASK = 0b1111 << 4;
@@ -61,6 +63,23 @@ public class Joypad implements Component {
         return NO_DATA;
     }
 
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) line0).put((byte) line1).put((byte) regP1);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        line0 = Byte.toUnsignedInt(buffer.get());
+        line1 = Byte.toUnsignedInt(buffer.get());
+        regP1 = Byte.toUnsignedInt(buffer.get());
+    }
+
+    @Override
+    public int[] addressRanges() {
+        return new int[] { AddressMap.REG_P1, AddressMap.REG_P1 + 1 };
+    }
+
     @Override
     public void write(int address, int data) {
         Preconditions.checkBits16(address);
@@ -2,18 +2,27 @@ package ch.epfl.gameboj.component;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.Stateful;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
  * Class simulating the GameBoy's Timer.
+ * The counters are not updated on every cycle: the Timer only remembers the
+ * last cycle it was synchronized at, and computes the elapsed increments
+ * when one of its registers is accessed or when its secondary counter
+ * overflows.
  * @author Andrew Dobis (Sciper: 272002)
  * @author Matthieu De Beule (Sciper: 269623)
  */
-public final class Timer implements Component, Clocked{
+public final class Timer implements Component, Clocked, Stateful {
     private static final int PRIMARY_COUNTER_INC = 4;
+    private static final int PRIMARY_COUNTER_SIZE = 1 << (Byte.SIZE * 2);
+    private static final int TIMA_OVERFLOW = 0x100;
+    private static final int[] TAC_BITS = { 9, 3, 5, 7 };
 
     private Cpu cpu;
     private int primaryCounter;
@@ -21,6 +30,10 @@ public final class Timer implements Component, Clocked{
     private int TMA;
     private int TAC;
 
+    private long currentCycle;
+    private long syncedCycle;
+    private long overflowCycle;
+
     /**
      * Constructs the Timer associating it to the given cpu.
      * @param cpu the given cpu that will be associated to the Timer
@@ -33,14 +46,46 @@ public final class Timer implements Component, Clocked{
         TIMA = 0;
         TMA = 0;
         TAC = 0;
+
+        currentCycle = -1;
+        syncedCycle = -1;
+        overflowCycle = Long.MAX_VALUE;
     }
 
     @Override
     public void cycle(long cycle) {
+        currentCycle = cycle;
 
-        boolean s0 = state();
-        primaryCounter = Bits.clip(Byte.SIZE * 2, primaryCounter + PRIMARY_COUNTER_INC);
-        incIfChange(s0);
+        if (cycle >= overflowCycle)
+            sync();
+    }
+
+    @Override
+    public long nextEventCycle(long cycle) {
+        return Math.max(cycle, overflowCycle);
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        sync();
+        buffer.putShort((short) primaryCounter)
+                .put((byte) TIMA)
+                .put((byte) TMA)
+                .put((byte) TAC)
+                .putLong(currentCycle)
+                .putLong(syncedCycle)
+                .putLong(overflowCycle);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        primaryCounter = Short.toUnsignedInt(buffer.getShort());
+        TIMA = Byte.toUnsignedInt(buffer.get());
+        TMA = Byte.toUnsignedInt(buffer.get());
+        TAC = Byte.toUnsignedInt(buffer.get());
+        currentCycle = buffer.getLong();
+        syncedCycle = buffer.getLong();
+        overflowCycle = buffer.getLong();
     }
 
     @Override
@@ -49,8 +94,10 @@ public final class Timer implements Component, Clocked{
 
         switch (address) {
         case AddressMap.REG_DIV :
+            sync();
             return Bits.extract(primaryCounter, Byte.SIZE, Byte.SIZE);
         case AddressMap.REG_TIMA :
+            sync();
             return TIMA;
         case AddressMap.REG_TMA :
             return TMA;
@@ -61,12 +108,18 @@ public final class Timer implements Component, Clocked{
         }
     }
 
+    @Override
+    public int[] addressRanges() {
+        return new int[] { AddressMap.REG_DIV, AddressMap.REG_TAC + 1 };
+    }
+
     @Override
     public void write(int address, int data) {
 
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
 
+        sync();
         boolean s0 = state();
         switch (address) {
         case AddressMap.REG_DIV :
@@ -84,8 +137,9 @@ public final class Timer implements Component, Clocked{
             incIfChange(s0);
             break;
         default:
-            break;
+            return;
         }
+        computeOverflowCycle();
     }
 
     /**
@@ -95,15 +149,22 @@ public final class Timer implements Component, Clocked{
      * @return the state of the CPU.
      */
     private boolean state(){
+        return activated() && Bits.test(primaryCounter, selectedBit());
+    }
+
+    /**
+     * @return true iff the secondary counter is activated in TAC
+     */
+    private boolean activated() {
+        return Bits.test(TAC, 2);
+    }
 
-        boolean activated = Bits.test(TAC, 2);
-        boolean[] whichBit = {
-                Bits.test(primaryCounter, 9),
-                Bits.test(primaryCounter, 3),
-                Bits.test(primaryCounter, 5),
-                Bits.test(primaryCounter, 7)
-        };
-        return activated && whichBit[Bits.clip(2, TAC)];
+    /**
+     * @return the index of the bit of the primary counter whose falling
+     * edges increment the secondary counter
+     */
+    private int selectedBit() {
+        return TAC_BITS[Bits.clip(2, TAC)];
     }
 
     /**
@@ -115,12 +176,61 @@ public final class Timer implements Component, Clocked{
     private void incIfChange(boolean s0){
 
         if (s0 && !state()){
-            if(TIMA >= 0xFF){
-                cpu.requestInterrupt(Cpu.Interrupt.TIMER);
-                TIMA = TMA;
-            } else {
-                TIMA++;
-            }
+            incTima(1);
+        }
+    }
+
+    /**
+     * Increments the secondary counter the given number of times, reloading
+     * it with TMA and raising an interruption each time it overflows.
+     * @param count the number of increments
+     */
+    private void incTima(long count) {
+        long toOverflow = TIMA_OVERFLOW - TIMA;
+
+        if (count < toOverflow) {
+            TIMA += count;
+        } else {
+            cpu.requestInterrupt(Cpu.Interrupt.TIMER);
+            TIMA = TMA + (int) ((count - toOverflow) % (TIMA_OVERFLOW - TMA));
+        }
+    }
+
+    /**
+     * Brings the counters up to date with the last cycle given to the Timer,
+     * by counting the falling edges of the selected bit of the primary counter
+     * over the elapsed cycles.
+     */
+    private void sync() {
+        long elapsed = currentCycle - syncedCycle;
+        if (elapsed <= 0)
+            return;
+
+        long counterEnd = primaryCounter + elapsed * PRIMARY_COUNTER_INC;
+        if (activated()) {
+            long period = 1L << (selectedBit() + 1);
+            incTima(counterEnd / period - primaryCounter / period);
+        }
+
+        primaryCounter = (int) (counterEnd % PRIMARY_COUNTER_SIZE);
+        syncedCycle = currentCycle;
+        computeOverflowCycle();
+    }
+
+    /**
+     * Computes the cycle during which the secondary counter will next
+     * overflow, assuming the registers are not modified in the meantime.
+     */
+    private void computeOverflowCycle() {
+        if (!activated()) {
+            overflowCycle = Long.MAX_VALUE;
+            return;
         }
+
+        long period = 1L << (selectedBit() + 1);
+        long overflowCounter =
+                (primaryCounter / period + TIMA_OVERFLOW - TIMA) * period;
+        overflowCycle = syncedCycle
+                + (overflowCounter - primaryCounter) / PRIMARY_COUNTER_INC;
     }
 }
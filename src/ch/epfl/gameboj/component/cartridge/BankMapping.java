@@ -0,0 +1,90 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.Rom;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Maps the banks of ROM and RAM selected by a memory bank controller
+ * directly on the bus, once the controller was given a mapping.
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+final class BankMapping {
+    static final int ROM_BANK_SIZE = 0x4000;
+
+    private final Rom rom;
+    private final Ram ram;
+    //Mapping of the selected banks on the bus, null if they aren't mapped
+    private Bus.DirectMapping mapping;
+
+    /**
+     * Constructs the mapping of the banks of the given memories
+     * @param rom the ROM of the cartridge
+     * @param ram the RAM of the cartridge
+     */
+    BankMapping(Rom rom, Ram ram) {
+        this.rom = rom;
+        this.ram = ram;
+    }
+
+    /**
+     * Sets the mapping through which the banks are mapped from now on
+     * @param mapping the mapping
+     */
+    void setMapping(Bus.DirectMapping mapping) {
+        this.mapping = mapping;
+    }
+
+    /**
+     * Maps the two selected banks of the ROM, if they are mapped at all
+     * @param index0 the index in the ROM of the bank at address 0
+     * @param index1 the index in the ROM of the bank at address 0x4000
+     */
+    void mapRom(int index0, int index1) {
+        if (mapping != null) {
+            mapRomBank(0, index0);
+            mapRomBank(ROM_BANK_SIZE, index1);
+        }
+    }
+
+    /**
+     * Maps the selected bank of the RAM if it is enabled, and unmaps it
+     * otherwise, if it is mapped at all. A RAM smaller than the area is
+     * mapped repeatedly over it.
+     * @param enabled whether the RAM is enabled
+     * @param ramAddress gives the index in the RAM of an address of the area
+     */
+    void mapRam(boolean enabled, IntUnaryOperator ramAddress) {
+        if (mapping == null)
+            return;
+
+        int start = AddressMap.CARTRIDGE_RAM_START;
+        int end = AddressMap.CARTRIDGE_RAM_END;
+        if (enabled && ram.size() >= Bus.PAGE_SIZE
+                && Integer.bitCount(ram.size()) == 1) {
+            int length = Math.min(ram.size(), end - start);
+            for (int a = start; a < end; a += length)
+                mapping.map(a, a + length, ram.buffer(),
+                        ramAddress.applyAsInt(a), true);
+        } else {
+            mapping.unmap(start, end);
+        }
+    }
+
+    /**
+     * Maps the bank of the ROM starting at the given index at the given
+     * address, unless its bytes aren't contiguous in the ROM
+     */
+    private void mapRomBank(int address, int index) {
+        if (((rom.size() - 1) & (ROM_BANK_SIZE - 1)) == ROM_BANK_SIZE - 1
+                && index + ROM_BANK_SIZE <= rom.size())
+            mapping.map(address, address + ROM_BANK_SIZE, rom.buffer(), index,
+                    false);
+        else
+            mapping.unmap(address, address + ROM_BANK_SIZE);
+    }
+}
@@ -1,26 +1,28 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.Stateful;
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Rom;
+import ch.epfl.gameboj.component.memory.RomStore;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 
 /**
  * Class simulating a Cartridge containing a rom file.
  * @author Matthieu De Beule (Sciper: 269623)
  */
-public final class Cartridge implements Component {
+public final class Cartridge implements Component, Stateful {
     private static final int CARTRIDGE_TYPES = 4;
     private static final int CARTRIDGE_TYPE_ADDRESS = 0x147;
     private static final int ROM_SIZE = 0x149;
     private static final int CARTRIDGE_NAME_SIZE = 15;
     private static final int CARTRIDGE_NAME_START = 308;
 
-    private Component romController;
-    private static MBC1 rom;
+    private final Component romController;
 
     /**
      * Constructs a cartridge from a memory controller and the associated ROM
@@ -46,40 +48,86 @@ public final class Cartridge implements Component {
     }
 
     /**
-     * Make a cartridge from a given file
+     * Maps the memory of the cartridge directly through the given mapping,
+     * if its memory controller allows it, and keeps it mapped as the banks
+     * are switched
+     * @param mapping the mapping of the component through which the
+     *                cartridge is attached to the bus
+     */
+    public void mapOn(Bus.DirectMapping mapping) {
+        if (romController instanceof MappedController)
+            ((MappedController) romController).mapOn(mapping);
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        if (romController instanceof Stateful)
+            ((Stateful) romController).saveState(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        if (romController instanceof Stateful)
+            ((Stateful) romController).loadState(buffer);
+    }
+
+    /**
+     * Make a cartridge from a given file, whose ROM is shared with every
+     * other cartridge made from the same data
      * @param romFile containing the data to be put into the cartridge's ROM
      * @return cartridge whose ROM contains the data in romFile
      * @throws IOException if there is an I/O error (including the file not
      * existing)
      */
     public static Cartridge ofFile(File romFile) throws IOException {
+        return ofFile(romFile, RomStore.shared());
+    }
 
-        byte[] data = Files.readAllBytes(romFile.toPath());
-        Preconditions.checkArgument(0 <= data[CARTRIDGE_TYPE_ADDRESS]
-                && data[CARTRIDGE_TYPE_ADDRESS] < CARTRIDGE_TYPES);
+    /**
+     * Make a cartridge from a given file, loading its ROM from the given store
+     * @param romFile containing the data to be put into the cartridge's ROM
+     * @param store the store holding the ROM images
+     * @return cartridge whose ROM contains the data in romFile
+     * @throws IOException if there is an I/O error (including the file not
+     * existing)
+     */
+    public static Cartridge ofFile(File romFile, RomStore store)
+            throws IOException {
+        Rom rom = store.load(romFile.toPath());
+        Preconditions.checkArgument(rom.size() > ROM_SIZE);
+        int type = rom.read(CARTRIDGE_TYPE_ADDRESS);
+        Preconditions.checkArgument(type < CARTRIDGE_TYPES);
         int[] romSize = {0, 2048, 8192, 32768};
 
-        if(data[CARTRIDGE_TYPE_ADDRESS] == 0)
-            return new Cartridge(new MBC0(new Rom(data)));
-        else {
-            rom = new MBC1(new Rom(data), romSize[data[ROM_SIZE]]);
-            return new Cartridge(rom);
-        }
+        if(type == 0)
+            return new Cartridge(new MBC0(rom));
+        else
+            return new Cartridge(new MBC1(rom, romSize[rom.read(ROM_SIZE)]));
     }
 
     private String cartridgeName() {
         StringBuilder fileName = new StringBuilder(CARTRIDGE_NAME_SIZE);
         for (int i = 0; i < CARTRIDGE_NAME_SIZE; ++i)
-            fileName.append((char)rom.read(CARTRIDGE_NAME_START));
+            fileName.append((char)romController.read(CARTRIDGE_NAME_START));
         return fileName.toString();
     }
 
+    /**
+     * Saves the cartridge's RAM, if it has one, onto an external file
+     * @throws IOException if there is an error during the save
+     */
     public void saveState() throws IOException {
-        rom.save(cartridgeName());
+        if (romController instanceof MBC1)
+            ((MBC1) romController).save(cartridgeName());
     }
 
+    /**
+     * Loads the cartridge's RAM, if it has one, from an external file
+     * @throws IOException if there is an error during the loading
+     */
     public void loadState() throws IOException {
-        rom.load(cartridgeName());
+        if (romController instanceof MBC1)
+            ((MBC1) romController).load(cartridgeName());
     }
 }
 
@@ -1,7 +1,7 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Rom;
 
 /**
@@ -9,7 +9,7 @@ import ch.epfl.gameboj.component.memory.Rom;
  * @author Matthieu De Beule (Sciper: 269623)
  */
 
-public final class MBC0 implements Component{
+public final class MBC0 implements MappedController {
 
     private Rom rom;
     public static final int ROM_SIZE = 0x8000;
@@ -40,4 +40,9 @@ public final class MBC0 implements Component{
     public void write(int address, int data) {
         //ROM can't be written to, do nothing.
     }
+
+    @Override
+    public void mapOn(Bus.DirectMapping mapping) {
+        mapping.map(0, ROM_SIZE, rom.buffer(), 0, false);
+    }
 }
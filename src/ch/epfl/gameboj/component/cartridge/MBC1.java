@@ -1,16 +1,19 @@
 package ch.epfl.gameboj.component.cartridge;
 
+import static ch.epfl.gameboj.Preconditions.checkArgument;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.Stateful;
 import ch.epfl.gameboj.bits.Bits;
-import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
-public final class MBC1 implements Component {
+public final class MBC1 implements MappedController, Stateful {
     private static final int RAM_ENABLE = 0xA;
 
     private enum Mode { MODE_0, MODE_1 };
@@ -23,6 +26,8 @@ public final class MBC1 implements Component {
     private int romLsb5, ramRom2;
     private final int romMask, ramMask;
 
+    private final BankMapping banks;
+
     public MBC1(Rom rom, int ramSize) {
         this.rom = rom;
         this.ram = new Ram(ramSize);
@@ -34,6 +39,7 @@ public final class MBC1 implements Component {
 
         this.romMask = rom.size() - 1;
         this.ramMask = ramSize - 1;
+        this.banks = new BankMapping(rom, ram);
     }
 
     public int read(int address) {
@@ -55,15 +61,21 @@ public final class MBC1 implements Component {
         switch (Bits.extract(checkBits16(address), 13, 3)) {
         case 0:
             ramEnabled = Bits.clip(4, data) == RAM_ENABLE;
+            remapRam();
             break;
         case 1:
             romLsb5 = Math.max(1, Bits.clip(5, data));
+            remapRom();
             break;
         case 2:
             ramRom2 = Bits.clip(2, data);
+            remapRom();
+            remapRam();
             break;
         case 3:
             mode = Bits.test(data, 0) ? Mode.MODE_1 : Mode.MODE_0;
+            remapRom();
+            remapRam();
             break;
         case 5:
             if (ramEnabled)
@@ -72,6 +84,28 @@ public final class MBC1 implements Component {
         }
     }
 
+    @Override
+    public void mapOn(Bus.DirectMapping mapping) {
+        banks.setMapping(mapping);
+        remapRom();
+        remapRam();
+    }
+
+    /**
+     * Maps the two selected banks of the ROM, if they are mapped at all
+     */
+    private void remapRom() {
+        banks.mapRom(romAddress(msb2(), 0, 0), romAddress(ramRom2, romLsb5, 0));
+    }
+
+    /**
+     * Maps the selected bank of the RAM if it is enabled, and unmaps it
+     * otherwise, if it is mapped at all
+     */
+    private void remapRam() {
+        banks.mapRam(ramEnabled, this::ramAddress);
+    }
+
     private int msb2() {
         switch (mode) {
         case MODE_0: return 0;
@@ -88,18 +122,38 @@ public final class MBC1 implements Component {
         return ((msb2() << 13) | Bits.clip(13, b_12_0)) & ramMask;
     }
 
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (ramEnabled ? 1 : 0))
+                .put((byte) mode.ordinal())
+                .put((byte) romLsb5)
+                .put((byte) ramRom2);
+        ram.saveState(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        ramEnabled = buffer.get() != 0;
+        int modeIndex = buffer.get();
+        checkArgument(0 <= modeIndex && modeIndex < Mode.values().length);
+        mode = Mode.values()[modeIndex];
+        romLsb5 = buffer.get();
+        ramRom2 = buffer.get();
+        ram.loadState(buffer);
+        remapRom();
+        remapRam();
+    }
+
     /**
      * Saves the state of the ram onto an external file
      * @param fileName the name of the external file
      * @throws IOException if there is an error during the save
      */
     public void save(String fileName) throws IOException {
-        byte[] ramData = new byte[ram.size()];
+        ByteBuffer ramData = ByteBuffer.allocate(ram.size());
+        ram.saveState(ramData);
         try (OutputStream state = new FileOutputStream(fileName + ".bin")) {
-            for(int i = 0; i < ram.size(); ++i) {
-                ramData[i] = (byte) ram.read(i);
-            }
-            state.write(ramData);
+            state.write(ramData.array());
         }
     }
 
@@ -109,11 +163,8 @@ public final class MBC1 implements Component {
      * @throws IOException if there is an error during the loading
      */
     public void load(String fileName) throws IOException {
-        byte[] ramData;
         try(InputStream state = new FileInputStream(fileName + ".bin")) {
-            ramData = state.readAllBytes();
-            for (int i = 0; i < ram.size(); ++i)
-                ram.write(i, (int)ramData[i]);
+            ram.loadState(ByteBuffer.wrap(state.readAllBytes()));
         }
     }
 }
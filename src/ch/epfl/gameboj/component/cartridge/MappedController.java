@@ -0,0 +1,22 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.Component;
+
+/**
+ * Memory controller of a cartridge whose ROM banks and RAM can be mapped
+ * directly on the bus.
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+interface MappedController extends Component {
+
+    /**
+     * Maps the memory currently selected by the controller through the
+     * given mapping, and maps it again every time the controller switches
+     * banks, until mapOn is called with another mapping
+     * @param mapping the mapping of the component attached to the bus on
+     *                behalf of the cartridge
+     */
+    void mapOn(Bus.DirectMapping mapping);
+}
@@ -5,12 +5,16 @@ import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 
 import java.util.Objects;
+import java.util.function.IntUnaryOperator;
 
 
 
 /**
  * Class containing a collection of methods that help work with 8 and 16bit
- * values in a ZNHC-packed form
+ * values in a ZNHC-packed form.
+ * The results of the 8bit operations, packed with their flags, are
+ * precomputed once in tables indexed by the operands, so that each operation
+ * only checks its arguments and reads its table.
  * @author Andrew Dobis (Sciper: 272002)
  * @author Matthieu De Beule (Sciper: 269623)
  */
@@ -21,6 +25,36 @@ public final class Alu {
     public static final int MAX_8BITS = 0xFF;
     public static final int MAX_4BITS = 0xF;
 
+    //Packed results of the binary operations, indexed by c << 16 | l << 8 | r
+    private static final char[] ADD = table(2 << 16,
+            i -> computeAdd(l(i), r(i), Bits.test(i, 16)));
+    private static final char[] SUB = table(2 << 16,
+            i -> computeSub(l(i), r(i), Bits.test(i, 16)));
+    //Packed results of the logical operations, indexed by their 8bit result
+    private static final char[] LOGICAL = table(1 << 8,
+            i -> computeLogical(i));
+    //Packed results of the unary operations, indexed by c << 8 | v
+    private static final char[] ROTATE_LEFT = table(1 << 8,
+            i -> computeRotate(RotDir.LEFT, i));
+    private static final char[] ROTATE_RIGHT = table(1 << 8,
+            i -> computeRotate(RotDir.RIGHT, i));
+    private static final char[] ROTATE_LEFT_CARRY = table(2 << 8,
+            i -> computeRotate(RotDir.LEFT, r(i), Bits.test(i, 8)));
+    private static final char[] ROTATE_RIGHT_CARRY = table(2 << 8,
+            i -> computeRotate(RotDir.RIGHT, r(i), Bits.test(i, 8)));
+    private static final char[] SHIFT_LEFT = table(1 << 8,
+            i -> computeShiftLeft(i));
+    private static final char[] SHIFT_RIGHT_A = table(1 << 8,
+            i -> computeShiftRightA(i));
+    private static final char[] SHIFT_RIGHT_L = table(1 << 8,
+            i -> computeShiftRightL(i));
+    private static final char[] SWAP = table(1 << 8, i -> computeSwap(i));
+    //Packed results of the BCD adjustment, indexed by c << 10 | h << 9 |
+    //n << 8 | v
+    private static final char[] BCD_ADJUST = table(8 << 8,
+            i -> computeBcdAdjust(r(i), Bits.test(i, 8), Bits.test(i, 9),
+                    Bits.test(i, 10)));
+
     /**
      * Default Constructor for the class Alu
      */
@@ -76,7 +110,7 @@ public final class Alu {
     public static int unpackValue(int valueFlags) {
         Preconditions.checkArgument(valueFlags <= MAX_24BITS);
 
-        return Bits.extract(valueFlags, 8, 24);
+        return valueFlags >>> 8;
     }
 
     /**
@@ -87,7 +121,7 @@ public final class Alu {
     public static int unpackFlags(int valueFlags) {
         Preconditions.checkArgument(valueFlags <= MAX_24BITS);
 
-        return Bits.clip(8, valueFlags) & 0xF0;
+        return valueFlags & 0xF0;
     }
 
     /**
@@ -100,17 +134,9 @@ public final class Alu {
      * of the 4 LSB, C whether there's a carry after the complete addition)
      */
     public static int add(int l, int r, boolean c0) {
-        Preconditions.checkBits8(l);
-        Preconditions.checkBits8(r);
-
-        int carry = (c0) ? 1 : 0;
-        boolean H = Bits.clip(4, l) + Bits.clip(4, r) + carry > MAX_4BITS;
-        boolean C = l + r + carry > MAX_8BITS;
-        int value = Bits.clip(8, l + r + carry);
-        boolean Z = value == 0;
-
-        return packValueZNHC(value, Z, false, H, C);
+        checkBits8(l, r);
 
+        return ADD[(c0 ? 1 << 16 : 0) | l << 8 | r];
     }
 
     /**
@@ -162,6 +188,18 @@ public final class Alu {
         return packValueZNHC(sum, false, false, H, C);
     }
 
+    /**
+     * Returns the Z0HC flags of the sum of two 8bit values, which are not
+     * checked
+     * @param l first 8bit value
+     * @param r second 8bit value
+     * @param carry initial carry, 0 or 1
+     * @return the flags in the form 0bZNHC0000
+     */
+    static int addFlags(int l, int r, int carry) {
+        return ADD[carry << 16 | l << 8 | r] & 0xF0;
+    }
+
     /**
      * Subtract two 8bit values (with an initial borrow) and package with Z1HC
      * @param l first 8bit value
@@ -170,16 +208,9 @@ public final class Alu {
      * @return packed subtracted value with Z1HC flags
      */
     public static int sub(int l, int r, boolean b0) {
-        Preconditions.checkBits8(l);
-        Preconditions.checkBits8(r);
-
-        int borrow = (b0) ? 1 : 0;
-        boolean H = Bits.clip(4, l) < Bits.clip(4, r) + borrow;
-        boolean C = l < r + borrow;
-        int value = Bits.clip(8 , l - r - borrow);
-        boolean Z = (value == 0);
+        checkBits8(l, r);
 
-        return packValueZNHC(value, Z, true, H, C);
+        return SUB[(b0 ? 1 << 16 : 0) | l << 8 | r];
     }
 
     /**
@@ -192,6 +223,18 @@ public final class Alu {
         return sub(l, r, false);
     }
 
+    /**
+     * Returns the Z1HC flags of the difference of two 8bit values, which are
+     * not checked
+     * @param l first 8bit value
+     * @param r second 8bit value
+     * @param borrow initial borrow, 0 or 1
+     * @return the flags in the form 0bZNHC0000
+     */
+    static int subFlags(int l, int r, int borrow) {
+        return SUB[borrow << 16 | l << 8 | r] & 0xF0;
+    }
+
     /**
      * Adjust an 8bit value to the BCD format
      * @param v 8bit value to be adjusted
@@ -203,15 +246,8 @@ public final class Alu {
     public static int bcdAdjust(int v, boolean n, boolean h, boolean c) {
         Preconditions.checkBits8(v);
 
-        boolean fixL = h || (!n && Bits.clip(4, v) > 9);
-        boolean fixH = c || (!n && v > 0x99);
-        int fixLInt = (fixL) ? 1 : 0;
-        int fixHInt = (fixH) ? 1 : 0;
-        int fix = 0x60 * fixHInt + 0x06 * fixLInt;
-        int va = n ? (v - fix) : (v + fix);
-        va = Bits.clip(8, va);
-
-        return packValueZNHC(va, va == 0, n, false, fixH);
+        return BCD_ADJUST[(c ? 1 << 10 : 0) | (h ? 1 << 9 : 0)
+                | (n ? 1 << 8 : 0) | v];
     }
 
     /**
@@ -221,13 +257,9 @@ public final class Alu {
      * @return l & r packed with the flags Z000.
      */
     public static int and(int l, int r) {
-        Preconditions.checkBits8(l);
-        Preconditions.checkBits8(r);
+        checkBits8(l, r);
 
-        int result = (l & r) ;
-        boolean z = result == 0;
-
-        return packValueZNHC(result, z, false, true, false);
+        return LOGICAL[l & r] | Flag.H.mask();
     }
 
     /**
@@ -237,13 +269,9 @@ public final class Alu {
      * @return l | f packed with the flags Z000.
      */
     public static int or(int l, int r) {
-        Preconditions.checkBits8(l);
-        Preconditions.checkBits8(r);
-
-        int result = (l | r);
-        boolean z = result == 0;
+        checkBits8(l, r);
 
-        return packValueZNHC(result, z, false, false, false);
+        return LOGICAL[l | r];
     }
 
     /**
@@ -253,13 +281,9 @@ public final class Alu {
      * @return l ^ r packed with the flags Z000.
      */
     public static int xor(int l, int r) {
-        Preconditions.checkBits8(l);
-        Preconditions.checkBits8(r);
+        checkBits8(l, r);
 
-        int result = (l ^ r);
-        boolean z = result == 0;
-
-        return packValueZNHC(result, z, false, false, false);
+        return LOGICAL[l ^ r];
     }
 
     /**
@@ -269,12 +293,7 @@ public final class Alu {
      * packed with the flags Z00C
      */
     public static int shiftLeft(int v) {
-        Preconditions.checkBits8(v);
-        int result = Bits.clip(8, v << 1);
-        boolean z = result == 0;
-        boolean c = Bits.extract(v, 7, 1) == 1;
-
-        return packValueZNHC(result, z, false, false, c);
+        return SHIFT_LEFT[Preconditions.checkBits8(v)];
     }
 
     /**
@@ -284,14 +303,7 @@ public final class Alu {
      * packed with the flags Z00C
      */
     public static int shiftRightA(int v) {
-        Preconditions.checkBits8(v);
-        boolean c = (Bits.clip(1, v) == 1);
-        int signBit = Bits.mask(7) & v;
-        int shifted = v >> 1;
-        int result = shifted | signBit;
-        boolean z = (result == 0);
-
-        return packValueZNHC(result, z, false, false, c);
+        return SHIFT_RIGHT_A[Preconditions.checkBits8(v)];
     }
 
     /**
@@ -300,12 +312,7 @@ public final class Alu {
      * @return v shifted logically to the right by 1 packed with the flags Z00C
      */
     public static int shiftRightL(int v) {
-        Preconditions.checkBits8(v);
-        boolean c = Bits.clip(1, v) == 1;
-        int result = v >>> 1;
-        boolean z = result == 0;
-
-        return packValueZNHC(result, z, false, false, c);
+        return SHIFT_RIGHT_L[Preconditions.checkBits8(v)];
     }
 
     /**
@@ -317,17 +324,8 @@ public final class Alu {
      */
     public static int rotate(RotDir d, int v) {
         Preconditions.checkBits8(v);
-        int rotated;
-        int extremeHopper;
-        if (d==RotDir.LEFT){
-            extremeHopper = Bits.extract(v, 7, 1);
-            rotated = (Bits.clip(7, v) << 1) + extremeHopper;
-        } else {
-            extremeHopper = Bits.clip(1, v);
-            rotated = Bits.extract(v, 1, 7) + (extremeHopper << 7);
-        }
-        return packValueZNHC(rotated, rotated == 0,
-                false, false, extremeHopper == 1);
+
+        return d == RotDir.LEFT ? ROTATE_LEFT[v] : ROTATE_RIGHT[v];
     }
 
     /**
@@ -340,19 +338,10 @@ public final class Alu {
      */
     public static int rotate(RotDir d, int v, boolean c) {
         Preconditions.checkBits8(v);
-        int C = (c) ? 1 : 0;
-        int rotated;
-        int newCarry;
-        if (d==RotDir.LEFT){
-            rotated = Bits.clip(8,(v << 1) + C);
-            newCarry = Bits.extract(v, 7, 1);
-        } else {
-            int vWithCarry = v + (C << 8);
-            rotated = vWithCarry >> 1;
-            newCarry = Bits.clip(1, v);
-        }
-        return packValueZNHC(rotated, rotated == 0,
-                false, false, newCarry == 1);
+        int index = (c ? 1 << 8 : 0) | v;
+
+        return d == RotDir.LEFT ? ROTATE_LEFT_CARRY[index]
+                : ROTATE_RIGHT_CARRY[index];
     }
 
     /**
@@ -361,12 +350,7 @@ public final class Alu {
      * @return value with swapped MSB & LSB and Z000 flags
      */
     public static int swap(int v) {
-        Preconditions.checkBits8(v);
-        int swapped = Bits.rotate(8, v, 4);
-        Preconditions.checkBits8(swapped);
-
-        return packValueZNHC(swapped, swapped == 0, false, false,
-                false);
+        return SWAP[Preconditions.checkBits8(v)];
     }
 
     /**
@@ -382,4 +366,141 @@ public final class Alu {
 
         return packValueZNHC(0, Z, false, true, false);
     }
+
+    /**
+     * Checks that the two given values are 8bit values
+     * @throws IllegalArgumentException if one of them isn't an 8bit value
+     */
+    private static void checkBits8(int l, int r) {
+        Preconditions.checkArgument(((l | r) & ~MAX_8BITS) == 0);
+    }
+
+    /**
+     * Builds a table of packed results
+     * @param size the number of entries of the table
+     * @param operation computes the packed result for a given index
+     * @return the table
+     */
+    private static char[] table(int size, IntUnaryOperator operation) {
+        char[] table = new char[size];
+        for (int i = 0; i < size; ++i)
+            table[i] = (char) operation.applyAsInt(i);
+        return table;
+    }
+
+    /**
+     * @return the left operand encoded in the given table index
+     */
+    private static int l(int index) {
+        return Bits.extract(index, 8, 8);
+    }
+
+    /**
+     * @return the right operand encoded in the given table index
+     */
+    private static int r(int index) {
+        return Bits.clip(8, index);
+    }
+
+    //The operations computed directly, only used to build the tables
+
+    private static int computeLogical(int result) {
+        return packValueZNHC(result, result == 0, false, false, false);
+    }
+
+    private static int computeAdd(int l, int r, boolean c0) {
+        int carry = (c0) ? 1 : 0;
+        boolean H = Bits.clip(4, l) + Bits.clip(4, r) + carry > MAX_4BITS;
+        boolean C = l + r + carry > MAX_8BITS;
+        int value = Bits.clip(8, l + r + carry);
+        boolean Z = value == 0;
+
+        return packValueZNHC(value, Z, false, H, C);
+    }
+
+    private static int computeSub(int l, int r, boolean b0) {
+        int borrow = (b0) ? 1 : 0;
+        boolean H = Bits.clip(4, l) < Bits.clip(4, r) + borrow;
+        boolean C = l < r + borrow;
+        int value = Bits.clip(8 , l - r - borrow);
+        boolean Z = (value == 0);
+
+        return packValueZNHC(value, Z, true, H, C);
+    }
+
+    private static int computeBcdAdjust(int v, boolean n, boolean h,
+            boolean c) {
+        boolean fixL = h || (!n && Bits.clip(4, v) > 9);
+        boolean fixH = c || (!n && v > 0x99);
+        int fixLInt = (fixL) ? 1 : 0;
+        int fixHInt = (fixH) ? 1 : 0;
+        int fix = 0x60 * fixHInt + 0x06 * fixLInt;
+        int va = n ? (v - fix) : (v + fix);
+        va = Bits.clip(8, va);
+
+        return packValueZNHC(va, va == 0, n, false, fixH);
+    }
+
+    private static int computeShiftLeft(int v) {
+        int result = Bits.clip(8, v << 1);
+        boolean z = result == 0;
+        boolean c = Bits.extract(v, 7, 1) == 1;
+
+        return packValueZNHC(result, z, false, false, c);
+    }
+
+    private static int computeShiftRightA(int v) {
+        boolean c = (Bits.clip(1, v) == 1);
+        int signBit = Bits.mask(7) & v;
+        int shifted = v >> 1;
+        int result = shifted | signBit;
+        boolean z = (result == 0);
+
+        return packValueZNHC(result, z, false, false, c);
+    }
+
+    private static int computeShiftRightL(int v) {
+        boolean c = Bits.clip(1, v) == 1;
+        int result = v >>> 1;
+        boolean z = result == 0;
+
+        return packValueZNHC(result, z, false, false, c);
+    }
+
+    private static int computeRotate(RotDir d, int v) {
+        int rotated;
+        int extremeHopper;
+        if (d==RotDir.LEFT){
+            extremeHopper = Bits.extract(v, 7, 1);
+            rotated = (Bits.clip(7, v) << 1) + extremeHopper;
+        } else {
+            extremeHopper = Bits.clip(1, v);
+            rotated = Bits.extract(v, 1, 7) + (extremeHopper << 7);
+        }
+        return packValueZNHC(rotated, rotated == 0,
+                false, false, extremeHopper == 1);
+    }
+
+    private static int computeRotate(RotDir d, int v, boolean c) {
+        int C = (c) ? 1 : 0;
+        int rotated;
+        int newCarry;
+        if (d==RotDir.LEFT){
+            rotated = Bits.clip(8,(v << 1) + C);
+            newCarry = Bits.extract(v, 7, 1);
+        } else {
+            int vWithCarry = v + (C << 8);
+            rotated = vWithCarry >> 1;
+            newCarry = Bits.clip(1, v);
+        }
+        return packValueZNHC(rotated, rotated == 0,
+                false, false, newCarry == 1);
+    }
+
+    private static int computeSwap(int v) {
+        int swapped = Bits.rotate(8, v, 4);
+
+        return packValueZNHC(swapped, swapped == 0, false, false,
+                false);
+    }
 }
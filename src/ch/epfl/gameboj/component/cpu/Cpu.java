@@ -8,7 +8,10 @@ import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.RamController;
 
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
 import java.util.Objects;
+import java.util.Set;
 
 import static ch.epfl.gameboj.bits.Bits.*;
 import static ch.epfl.gameboj.component.cpu.Alu.*;
@@ -18,14 +21,50 @@ import static ch.epfl.gameboj.component.cpu.Alu.*;
  * @author Andrew Dobis (Sciper: 272002)
  * @author Matthieu De Beule (Sciper: 269623)
  */
-public final class Cpu implements Clocked, Component {
+public final class Cpu implements Clocked, Component, Stateful {
     public static final int OPCODE_PREFIX = 0xCB;
 
-    private final RegisterFile<Reg> registerFile;
-    private static final Opcode[] DIRECT_OPCODE_TABLE =
-            buildOpcodeTable(Opcode.Kind.DIRECT);
-    private static final Opcode[] PREFIXED_OPCODE_TABLE =
-            buildOpcodeTable(Opcode.Kind.PREFIXED);
+    private final Registers registers;
+    private final LazyFlags flags; //register F
+    private static final Reg16[] REGS16 =
+            {Reg16.BC, Reg16.DE, Reg16.HL, Reg16.AF};
+    //Instructions which may be part of an idle loop, as they write nothing
+    private static final Set<Opcode.Family> IDLE_LOOP_FAMILIES = EnumSet.of(
+            Opcode.Family.NOP, Opcode.Family.LD_R8_HLR,
+            Opcode.Family.LD_A_HLRU, Opcode.Family.LD_A_N8R,
+            Opcode.Family.LD_A_CR, Opcode.Family.LD_A_N16R,
+            Opcode.Family.LD_A_BCR, Opcode.Family.LD_A_DER,
+            Opcode.Family.LD_R8_N8, Opcode.Family.LD_R16SP_N16,
+            Opcode.Family.LD_R8_R8, Opcode.Family.ADD_A_R8,
+            Opcode.Family.ADD_A_N8, Opcode.Family.ADD_A_HLR,
+            Opcode.Family.INC_R8, Opcode.Family.INC_R16SP,
+            Opcode.Family.ADD_HL_R16SP, Opcode.Family.SUB_A_R8,
+            Opcode.Family.SUB_A_N8, Opcode.Family.SUB_A_HLR,
+            Opcode.Family.DEC_R8, Opcode.Family.CP_A_R8,
+            Opcode.Family.CP_A_N8, Opcode.Family.CP_A_HLR,
+            Opcode.Family.DEC_R16SP, Opcode.Family.AND_A_N8,
+            Opcode.Family.AND_A_R8, Opcode.Family.AND_A_HLR,
+            Opcode.Family.OR_A_R8, Opcode.Family.OR_A_N8,
+            Opcode.Family.OR_A_HLR, Opcode.Family.XOR_A_R8,
+            Opcode.Family.XOR_A_N8, Opcode.Family.XOR_A_HLR,
+            Opcode.Family.ROTCA, Opcode.Family.ROTA, Opcode.Family.ROTC_R8,
+            Opcode.Family.ROT_R8, Opcode.Family.SWAP_R8,
+            Opcode.Family.SLA_R8, Opcode.Family.SRA_R8,
+            Opcode.Family.SRL_R8, Opcode.Family.BIT_U3_R8,
+            Opcode.Family.BIT_U3_HLR, Opcode.Family.CHG_U3_R8,
+            Opcode.Family.DAA, Opcode.Family.CPL, Opcode.Family.SCCF,
+            Opcode.Family.JP_N16, Opcode.Family.JP_CC_N16,
+            Opcode.Family.JR_E8, Opcode.Family.JR_CC_E8);
+    //Instructions which may close a loop by jumping backwards
+    private static final Set<Opcode.Family> LOOP_JUMP_FAMILIES = EnumSet.of(
+            Opcode.Family.JP_N16, Opcode.Family.JP_CC_N16,
+            Opcode.Family.JR_E8, Opcode.Family.JR_CC_E8);
+    //Maximum number of instructions executed in a single step
+    private static final int MAX_FUSED_INSTRUCTIONS = 3;
+    private static final long NO_FUSION = Long.MIN_VALUE;
+    //Index of the prefixed opcodes in the opcode table
+    private static final int PREFIXED_OFFSET = 256;
+    private static final DecodedOpcode[] OPCODE_TABLE = buildOpcodeTable();
 
     private Bus aBus;
     private long nextNonIdleCycle;
@@ -35,16 +74,38 @@ public final class Cpu implements Clocked, Component {
     private int regIE;
     private int regIF;
     private boolean regIME;
+    //Unlike the other RAMs, the high RAM isn't mapped directly on the bus:
+    //it shares its page, 0xFF, with the registers of the components and IE,
+    //and the bus only maps whole pages
     private Ram highRam = new Ram(AddressMap.HIGH_RAM_SIZE);
     private RamController hrc = new RamController(highRam, 0);
-
-    private final Reg16[] regs = {Reg16.BC, Reg16.DE, Reg16.HL, Reg16.AF};
+    //Cycle at which the OAM DMA using the bus ends, before which the CPU can
+    //only access the high RAM
+    private long busLockEnd;
+
+    //Counters, never restored from a snapshot
+    private long instructionsRetired;
+    private final long[] interruptsServiced =
+            new long[Interrupt.values().length];
+    private long haltedCycles;
+    //Cycle at which the current HALT started, -1 if unknown
+    private long haltStart = -1;
+    private long idleLoopCycles;
+
+    private final IdleLoopDetector idleLoop = new IdleLoopDetector();
+
+    //First cycle at which another component may act, before which the
+    //following instructions can be executed in the same step
+    private long fusionLimit = NO_FUSION;
+    //Whether the current step wrote memory whose effect depends on time
+    private boolean timedWrite;
 
     /**
      * Builds a CPU
      */
     public Cpu() {
-        this.registerFile = new RegisterFile<>(Reg.values());
+        this.registers = new Registers();
+        this.flags = new LazyFlags();
         regPC = 0;
         regSP = 0;
         regIE = 0;
@@ -62,6 +123,8 @@ public final class Cpu implements Clocked, Component {
         //Reaction to the HALT command
         if(nextNonIdleCycle == Long.MAX_VALUE) {
             if(Bits.clip(5, regIE & regIF) != 0) {
+                if (Metrics.ENABLED && haltStart >= 0)
+                    haltedCycles += cycle - haltStart;
                 nextNonIdleCycle = cycle;
                 reallyCycle();
             }
@@ -71,11 +134,60 @@ public final class Cpu implements Clocked, Component {
         }
     }
 
+    @Override
+    public long nextEventCycle(long cycle) {
+        //Halted, waiting for an interruption
+        if (nextNonIdleCycle == Long.MAX_VALUE)
+            return Bits.clip(5, regIE & regIF) != 0 ? cycle : Long.MAX_VALUE;
+
+        return nextNonIdleCycle < cycle ? Long.MAX_VALUE : nextNonIdleCycle;
+    }
+
+    /**
+     * Returns the first cycle, starting from the given one, during which the
+     * CPU may have something to do, knowing when the other components act
+     * next. If the CPU is in an idle loop whose iterations are all identical
+     * until then, these iterations are skipped.
+     * @param cycle the index of the current cycle
+     * @param othersNextEvent the first cycle, starting from the given one,
+     *                        during which one of the other components may
+     *                        have something to do
+     * @return the index of the next cycle where the CPU is not idle,
+     * or Long.MAX_VALUE if it is idle until its state is modified.
+     */
+    public long nextEventCycle(long cycle, long othersNextEvent) {
+        if (idleLoop.isTracking() && nextNonIdleCycle != Long.MAX_VALUE) {
+            long skipped = idleLoop.skippableIterations(cycle,
+                    nextNonIdleCycle, othersNextEvent);
+            if (skipped > 0) {
+                long skippedCycles = skipped * idleLoop.period();
+                nextNonIdleCycle += skippedCycles;
+                if (Metrics.ENABLED) {
+                    instructionsRetired +=
+                            skipped * idleLoop.periodInstructions();
+                    idleLoopCycles += skippedCycles;
+                }
+            }
+        }
+        fusionLimit = othersNextEvent;
+        return nextEventCycle(cycle);
+    }
+
     /**
      * Method called by cycle.
      * Runs the interruption handler and calls the dispatch.
+     *
+     * The instructions following the first one are executed in the same
+     * step, as a superinstruction, as long as this is exact: no other
+     * component acts before they start, no interruption is pending, and
+     * they only access memory whose content doesn't depend on the other
+     * components. The step ends after a jump, so that idle loops are still
+     * detected at their start.
      */
     private void reallyCycle() {
+        long limit = fusionLimit;
+        fusionLimit = NO_FUSION;
+        timedWrite = false;
 
         int andIEIF = Bits.clip(5, regIE & regIF);
 
@@ -85,43 +197,168 @@ public final class Cpu implements Clocked, Component {
 
             regIME = false;
             regIF = Bits.set(regIF, index, false);
+            idleLoop.abort();
             push16(regPC);
             regPC = AddressMap.INTERRUPTS[index];
             nextNonIdleCycle += 5;
+            if (Metrics.ENABLED)
+                ++interruptsServiced[index];
         }
         //Calls the dispatch function run the current command found int opcode
         else {
-            int valuePC = read8(regPC);
-            if (valuePC == OPCODE_PREFIX){
-                dispatch(PREFIXED_OPCODE_TABLE[read8AfterOpcode()]);
-            } else {
-                dispatch(DIRECT_OPCODE_TABLE[valuePC]);
+            DecodedOpcode decoded = opcodeAtPc();
+            dispatch(decoded);
+
+            for (int i = 1; i < MAX_FUSED_INSTRUCTIONS
+                    && canFuseAfter(decoded, limit); ++i) {
+                decoded = opcodeAtPc();
+                if (!isTimeless(decoded))
+                    break;
+                dispatch(decoded);
             }
         }
     }
 
     /**
-     * Enumeration containing all of the simulator's 8 bit registers.
+     * @return the opcode at the address contained in PC
+     */
+    private DecodedOpcode opcodeAtPc() {
+        int valuePC = read8(regPC);
+        return OPCODE_TABLE[valuePC == OPCODE_PREFIX
+                ? PREFIXED_OFFSET + read8AfterOpcode() : valuePC];
+    }
+
+    /**
+     * Determines whether the next instruction may be executed in the same
+     * step as the given one, which was just executed
+     * @param previous the instruction just executed
+     * @param limit the first cycle at which another component may act
+     * @return true iff the next instruction may be fused
+     */
+    private boolean canFuseAfter(DecodedOpcode previous, long limit) {
+        return !previous.loopJump && !timedWrite && nextNonIdleCycle < limit
+                && !(regIME && Bits.clip(5, regIE & regIF) != 0)
+                && isTimeless(regPC) && isTimeless(regPC + 2);
+    }
+
+    /**
+     * Determines whether the given instruction, at the address contained in
+     * PC, only accesses memory whose content doesn't depend on time
+     * @param decoded the instruction
+     * @return true iff the instruction can be executed ahead of its cycle
+     */
+    private boolean isTimeless(DecodedOpcode decoded) {
+        switch (decoded.access) {
+        case NONE:
+            return true;
+        case HL:
+            return isTimeless(registers.hl());
+        case BC:
+            return isTimeless(registers.bc());
+        case DE:
+            return isTimeless(registers.de());
+        case N16: {
+            int address = read16AfterOpcode();
+            return isTimeless(address) && isTimeless(address + 1);
+        }
+        case N8_HIGH:
+            return isTimeless(AddressMap.REGS_START + read8AfterOpcode());
+        case C_HIGH:
+            return isTimeless(AddressMap.REGS_START + registers.c());
+        case STACK:
+            return isTimeless(regSP - 2) && isTimeless(regSP + 1);
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Determines whether the content of the given address only depends on
+     * the CPU, not on the time at which it is accessed: the cartridge, the
+     * video and work RAMs and the high RAM, but not the OAM, which the DMA
+     * writes, nor the registers of the components
+     * @param address the address
+     * @return true iff the address can be accessed ahead of its cycle
      */
-    private enum Reg implements Register {
-        A, F, B, C, D, E, H, L
+    private static boolean isTimeless(int address) {
+        return (0 <= address && address < AddressMap.OAM_START)
+                || (AddressMap.HIGH_RAM_START <= address
+                && address < AddressMap.HIGH_RAM_END);
     }
 
     /**
      * Enumeration containing all of the simulator's 16 bit registers.
      */
     private enum Reg16 {
-        AF(Reg.A, Reg.F), BC(Reg.B, Reg.C), DE(Reg.D, Reg.E), HL(Reg.H, Reg.L);
-
-        Reg highReg;
-        Reg lowReg;
+        AF, BC, DE, HL
+    }
 
-        Reg16(Reg h, Reg l) {
-            this.highReg = h;
-            this.lowReg = l;
+    /**
+     * An opcode whose operands have been extracted from its encoding once
+     * and for all, so that they don't need to be decoded again every time
+     * the instruction is executed.
+     */
+    private static final class DecodedOpcode {
+        private final Opcode opcode;
+        private final int reg0, reg3;
+        private final Reg16 reg16;
+        private final int index3;
+        private final int condition;
+        private final int hlIncrement;
+        private final boolean bit3;
+        private final boolean modifier;
+        private final RotDir rotDir;
+        private final boolean idleLoopSafe;
+        private final boolean loopJump;
+        private final Access access;
+        private final Handler handler;
+
+        /**
+         * Decodes the operands of the given opcode
+         * @param opcode the opcode to decode
+         */
+        private DecodedOpcode(Opcode opcode) {
+            this.opcode = opcode;
+            reg0 = isRegEncoded(opcode, 0) ? extractReg(opcode, 0) : -1;
+            reg3 = isRegEncoded(opcode, 3) ? extractReg(opcode, 3) : -1;
+            reg16 = extractReg16(opcode);
+            index3 = extractTestIndex(opcode);
+            condition = Bits.extract(opcode.encoding, 3, 2);
+            hlIncrement = extractHlIncrement(opcode);
+            bit3 = Bits.test(opcode.encoding, 3);
+            modifier = extractModifier(opcode);
+            rotDir = extractRotDir(opcode);
+            idleLoopSafe = IDLE_LOOP_FAMILIES.contains(opcode.family);
+            loopJump = LOOP_JUMP_FAMILIES.contains(opcode.family);
+            access = accessOf(opcode.family);
+            handler = handlerOf(opcode.family);
         }
     }
 
+    /**
+     * The memory an instruction accesses, besides its own bytes
+     */
+    private enum Access {
+        NONE, HL, BC, DE, N16, N8_HIGH, C_HIGH, STACK, NEVER_FUSED
+    }
+
+    /**
+     * Code executing the instructions of a family of opcodes. Every family
+     * has its own small method, which HotSpot can compile and inline on its
+     * own, rather than one case of a huge switch.
+     */
+    @FunctionalInterface
+    private interface Handler {
+        /**
+         * Executes the given instruction
+         * @param cpu the CPU executing the instruction
+         * @param decoded the instruction, with its decoded operands
+         * @param postPC the address of the following instruction
+         * @return the address of the next instruction to execute
+         */
+        int execute(Cpu cpu, DecodedOpcode decoded, int postPC);
+    }
+
     /**
      * Enumeration containing all the 5 possible interruptions caused by the
      * GameBoy different components.
@@ -139,16 +376,49 @@ public final class Cpu implements Clocked, Component {
         regIF = Bits.set(regIF, i.index(), true);
     }
 
+    /**
+     * @return the number of instructions executed since the creation of
+     * the CPU
+     */
+    public long instructionsRetired() {
+        return instructionsRetired;
+    }
+
+    /**
+     * Returns the number of times the given interruption was handled since
+     * the creation of the CPU
+     * @param i the interruption
+     * @return the number of times its handler was called
+     */
+    public long interruptsServiced(Interrupt i) {
+        return interruptsServiced[i.index()];
+    }
+
+    /**
+     * @return the number of cycles spent halted, waiting for an
+     * interruption, since the creation of the CPU
+     */
+    public long haltedCycles() {
+        return haltedCycles;
+    }
+
+    /**
+     * @return the number of cycles skipped in idle loops since the creation
+     * of the CPU
+     */
+    public long idleLoopCycles() {
+        return idleLoopCycles;
+    }
+
     /**
      * Used to give the tests access to the registers.
      * @return an int[] containing the registers
      */
     public int[] _testGetPcSpAFBCDEHL() {
-        return new int[]{regPC, regSP, registerFile.get(Reg.A),
-                registerFile.get(Reg.F), registerFile.get(Reg.B),
-                registerFile.get(Reg.C), registerFile.get(Reg.D),
-                registerFile.get(Reg.E), registerFile.get(Reg.H),
-                registerFile.get(Reg.L)};
+        return new int[]{regPC, regSP, registers.a(), flags.get(),
+                registers.get(Registers.B), registers.c(),
+                registers.get(Registers.D), registers.get(Registers.E),
+                registers.get(Registers.H), registers.get(Registers.L)};
     }
 
     @Override
@@ -191,6 +461,67 @@ public final class Cpu implements Clocked, Component {
         }
     }
 
+    @Override
+    public int[] addressRanges() {
+        return new int[] {
+                AddressMap.REG_IF, AddressMap.REG_IF + 1,
+                AddressMap.HIGH_RAM_START, AddressMap.HIGH_RAM_END,
+                AddressMap.REG_IE, AddressMap.REG_IE + 1 };
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        registers.saveState(buffer);
+        buffer.put((byte) flags.get())
+                .putLong(nextNonIdleCycle)
+                .putShort((short) regPC)
+                .putShort((short) regSP)
+                .put((byte) regIE)
+                .put((byte) regIF)
+                .put((byte) (regIME ? 1 : 0))
+                .putLong(busLockEnd);
+        highRam.saveState(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        registers.loadState(buffer);
+        flags.set(Byte.toUnsignedInt(buffer.get()));
+        nextNonIdleCycle = buffer.getLong();
+        regPC = Short.toUnsignedInt(buffer.getShort());
+        regSP = Short.toUnsignedInt(buffer.getShort());
+        regIE = Byte.toUnsignedInt(buffer.get());
+        regIF = Byte.toUnsignedInt(buffer.get());
+        regIME = buffer.get() != 0;
+        busLockEnd = buffer.getLong();
+        highRam.loadState(buffer);
+        haltStart = -1;
+        fusionLimit = NO_FUSION;
+        idleLoop.abort();
+    }
+
+    /**
+     * Informs the CPU that an OAM DMA uses the bus until the given cycle.
+     * Until then, as on the GameBoy, the CPU can only access the high RAM:
+     * its other reads give 0xFF and its other writes are ignored, so that
+     * it can't modify the source of the transfer.
+     * @param cycle the cycle at which the transfer ends
+     */
+    public void lockBusUntil(long cycle) {
+        busLockEnd = cycle;
+    }
+
+    /**
+     * Informs the CPU that its state was loaded from a snapshot of the given
+     * cycle, so that if it is halted, the cycles it spends halted from then
+     * on are counted
+     * @param cycle the index of the cycle at which the snapshot was taken
+     */
+    public void restoredAt(long cycle) {
+        if (nextNonIdleCycle == Long.MAX_VALUE)
+            haltStart = cycle;
+    }
+
     @Override
     public void attachTo(Bus bus) {
         this.aBus = bus;
@@ -198,448 +529,744 @@ public final class Cpu implements Clocked, Component {
     }
 
     /**
-     * Interprets the given opcode by running the associated command given to
-     * the cpu.
-     * @param opcode we want to interpret
+     * Interprets the given opcode by running its handler.
+     * @param decoded the opcode we want to interpret, with its decoded operands
      */
-    private void dispatch(Opcode opcode) {
+    private void dispatch(DecodedOpcode decoded) {
+        Opcode opcode = decoded.opcode;
 
         int postPC = regPC + opcode.totalBytes;
         nextNonIdleCycle += opcode.cycles;
+        if (Metrics.ENABLED)
+            ++instructionsRetired;
+        if (idleLoop.isTracking()) {
+            if (decoded.idleLoopSafe)
+                idleLoop.executed();
+            else
+                idleLoop.abort();
+        }
 
-        switch (opcode.family) {
-        case NOP: {
-        } break;
-        case LD_R8_HLR: {
-            Reg r = extractReg(opcode, 3);
-            registerFile.set(r, read8AtHl());
-        } break;
-        case LD_A_HLRU: {
-            registerFile.set(Reg.A, read8AtHl());
-            setReg16(Reg16.HL, Bits.clip(16,reg16(Reg16.HL) + extractHlIncrement(opcode)));
-        } break;
-        case LD_A_N8R: {
-            registerFile.set(Reg.A , read8(AddressMap.REGS_START + read8AfterOpcode()));
-        } break;
-        case LD_A_CR: {
-            registerFile.set(Reg.A, read8(AddressMap.REGS_START + registerFile.get(Reg.C)));
-        } break;
-        case LD_A_N16R: {
-            registerFile.set(Reg.A, read8(read16AfterOpcode()));
-        } break;
-        case LD_A_BCR: {
-            registerFile.set(Reg.A, read8(reg16(Reg16.BC)));
-        } break;
-        case LD_A_DER: {
-            registerFile.set(Reg.A, read8(reg16(Reg16.DE)));
-        } break;
-        case LD_R8_N8: {
-            Reg r = extractReg(opcode, 3);
-            registerFile.set(r, read8AfterOpcode());
-        } break;
-        case LD_R16SP_N16: {
-            Reg16 r = extractReg16(opcode);
-            setReg16SP(r, read16AfterOpcode());
-        } break;
-        case POP_R16: {
-            Reg16 r = extractReg16(opcode);
-            setReg16(r, pop16());
-        } break;
-        case LD_HLR_R8: {
-            Reg r = extractReg(opcode, 0);
-            write8AtHl(registerFile.get(r));
-        } break;
-        case LD_HLRU_A: {
-            write8AtHl(registerFile.get(Reg.A));
-            setReg16(Reg16.HL, Bits.clip(16, reg16(Reg16.HL)
-                    + extractHlIncrement(opcode)));
-        } break;
-        case LD_N8R_A: {
-            write8(AddressMap.REGS_START + read8AfterOpcode(),
-                    registerFile.get(Reg.A));
-        } break;
-        case LD_CR_A: {
-            write8(AddressMap.REGS_START + registerFile.get(Reg.C),
-                    registerFile.get(Reg.A));
-        } break;
-        case LD_N16R_A: {
-            write8(read16AfterOpcode(), registerFile.get(Reg.A));
-        } break;
-        case LD_BCR_A: {
-            write8(reg16(Reg16.BC), registerFile.get(Reg.A));
-        } break;
-        case LD_DER_A: {
-            write8(reg16(Reg16.DE), registerFile.get(Reg.A));
-        } break;
-        case LD_HLR_N8: {
-            write8AtHl(read8AfterOpcode());
-        } break;
-        case LD_N16R_SP: {
-            write16(read16AfterOpcode(), regSP);
-        } break;
-        case LD_R8_R8: {
-            Reg r = extractReg(opcode, 3);
-            Reg s = extractReg(opcode, 0);
-            registerFile.set(r, registerFile.get(s));
-        } break;
-        case LD_SP_HL: {
-            regSP = reg16(Reg16.HL);
-        } break;
-        case PUSH_R16: {
-            Reg16 r = extractReg16(opcode);
-            push16(reg16(r));
-        } break;
-
-        // Add
-        case ADD_A_R8: {
-            Reg r = extractReg(opcode, 0);
-            boolean bit3 = Bits.test(opcode.encoding, 3);
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            setRegFlags(Reg.A, add(registerFile.get(Reg.A), registerFile.get(r),
-                    (bit3 && c)));
-        } break;
-        case ADD_A_N8: {
-            boolean bit3 = Bits.test(opcode.encoding, 3);
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            setRegFlags(Reg.A, add(registerFile.get(Reg.A), read8AfterOpcode(),
-                    (bit3 && c)));
-        } break;
-        case ADD_A_HLR: {
-            boolean bit3 = Bits.test(opcode.encoding, 3);
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            setRegFlags(Reg.A, add(registerFile.get(Reg.A), read8AtHl(),
-                    (bit3 && c)));
-        } break;
-        case INC_R8: {
-            Reg r = extractReg(opcode, 3);
-            int incR = add(registerFile.get(r), 1);
-            setRegFromAlu(r, incR);
-            combineAluFlags(incR, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.CPU);
-        } break;
-        case INC_HLR: {
-            int incHL = add(read8AtHl(), 1);
-            write8AtHlAndCombineAluFlags(incHL, FlagSrc.ALU, FlagSrc.V0,
-                    FlagSrc.ALU, FlagSrc.CPU);
-        } break;
-        case INC_R16SP: {
-            Reg16 r = extractReg16(opcode);
-            int rVal = extractReg16SPValue(opcode);
-            int incR = Bits.clip(16, rVal + 1);
-            setReg16SP(r, incR);
-        } break;
-        case ADD_HL_R16SP: {
-            int rVal = extractReg16SPValue(opcode);
-            int packHl = add16H(reg16(Reg16.HL), rVal);
-            setReg16(Reg16.HL, unpackValue(packHl));
-            combineAluFlags(packHl, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.ALU);
-
-        } break;
-        case LD_HLSP_S8: {
-            int v = add16L(regSP, Bits.clip(16,
-                    Bits.signExtend8(read8AfterOpcode())));
-            int e = unpackValue(v);
-            boolean b = test(opcode.encoding, 4);
-            setReg16SP(b ? Reg16.HL: Reg16.AF, e);
-            setFlags(v);
-        } break;
-
-        // Subtract
-        case SUB_A_R8: {
-            Reg r = extractReg(opcode, 0);
-            boolean bit3 = Bits.test(opcode.encoding, 3);
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            setRegFlags(Reg.A, sub(registerFile.get(Reg.A), registerFile.get(r),
-                    (bit3 && c)));
-        } break;
-        case SUB_A_N8: {
-            boolean bit3 = Bits.test(opcode.encoding, 3);
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            setRegFlags(Reg.A, sub(registerFile.get(Reg.A), read8AfterOpcode(),
-                    (bit3 && c)));
-        } break;
-        case SUB_A_HLR: {
-            boolean bit3 = Bits.test(opcode.encoding, 3);
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            setRegFlags(Reg.A, sub(registerFile.get(Reg.A), read8AtHl(),
-                    (bit3 && c)));
-        } break;
-        case DEC_R8: {
-            Reg r = extractReg(opcode, 3);
-            int decR = sub(registerFile.get(r), 1);
-            combineAluFlags(decR, FlagSrc.ALU, FlagSrc.V1,
-                    FlagSrc.ALU, FlagSrc.CPU);
-            setRegFromAlu(r, decR);
-        } break;
-        case DEC_HLR: {
-            int decHL = sub(read8AtHl(), 1);
-            write8AtHlAndCombineAluFlags(decHL, FlagSrc.ALU, FlagSrc.V1,
-                    FlagSrc.ALU, FlagSrc.CPU);
-        } break;
-        case CP_A_R8: {
-            Reg r = extractReg(opcode, 0);
-            setFlags(sub(registerFile.get(Reg.A), registerFile.get(r)));
-        } break;
-        case CP_A_N8: {
-            setFlags(sub(registerFile.get(Reg.A), read8AfterOpcode()));
-        } break;
-        case CP_A_HLR: {
-            setFlags(sub(registerFile.get(Reg.A), read8AtHl()));
-        } break;
-        case DEC_R16SP: {
-            Reg16 r = extractReg16(opcode);
-            int rVal = extractReg16SPValue(opcode);
-            int decR = Bits.clip(16,rVal - 1);
-            setReg16SP(r, decR);
-        } break;
-
-        // And, or, xor, complement
-        case AND_A_N8: {
-            setRegFlags(Reg.A, and(registerFile.get(Reg.A),
-                    read8AfterOpcode()));
-        } break;
-        case AND_A_R8: {
-            Reg r = extractReg(opcode, 0);
-            setRegFlags(Reg.A, and(registerFile.get(Reg.A),
-                    registerFile.get(r)));
-        } break;
-        case AND_A_HLR: {
-            setRegFlags(Reg.A, and(registerFile.get(Reg.A), read8AtHl()));
-        } break;
-        case OR_A_R8: {
-            Reg r = extractReg(opcode, 0);
-            setRegFlags(Reg.A, or(registerFile.get(Reg.A),registerFile.get(r)));
-        } break;
-        case OR_A_N8: {
-            setRegFlags(Reg.A, or(registerFile.get(Reg.A), read8AfterOpcode()));
-        } break;
-        case OR_A_HLR: {
-            setRegFlags(Reg.A, or(registerFile.get(Reg.A), read8AtHl()));
-        } break;
-        case XOR_A_R8: {
-            Reg r = extractReg(opcode, 0);
-            setRegFlags(Reg.A, xor(registerFile.get(Reg.A),
-                    registerFile.get(r)));
-        } break;
-        case XOR_A_N8: {
-            setRegFlags(Reg.A, xor(registerFile.get(Reg.A),
-                    read8AfterOpcode()));
-        } break;
-        case XOR_A_HLR: {
-            setRegFlags(Reg.A, xor(registerFile.get(Reg.A), read8AtHl()));
-        } break;
-        case CPL: {
-            int notA = complement8(registerFile.get(Reg.A));
-            combineAluFlags(0, FlagSrc.CPU, FlagSrc.V1,
-                    FlagSrc.V1, FlagSrc.CPU);
-            registerFile.set(Reg.A, notA);
-        } break;
-
-        // Rotate, shift
-        case ROTCA: {
-            int rot = rotate(extractRotDir(opcode), registerFile.get(Reg.A));
-            combineAluFlags(rot, FlagSrc.V0, FlagSrc.V0,
-                    FlagSrc.V0, FlagSrc.ALU);
-            setRegFromAlu(Reg.A, rot);
-        } break;
-        case ROTA: {
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            int rot = rotate(extractRotDir(opcode), registerFile.get(Reg.A), c);
-            combineAluFlags(rot, FlagSrc.V0, FlagSrc.V0,
-                    FlagSrc.V0, FlagSrc.ALU);
-            setRegFromAlu(Reg.A, rot);
-        } break;
-        case ROTC_R8: {
-            Reg r = extractReg(opcode, 0);
-            int rot = rotate(extractRotDir(opcode), registerFile.get(r));
-            setRegFlags(r, rot);
-        } break;
-        case ROT_R8: {
-            Reg r = extractReg(opcode, 0);
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            int rot = rotate(extractRotDir(opcode), registerFile.get(r), c);
-            setRegFlags(r, rot);
-        } break;
-        case ROTC_HLR: {
-            int rotHL = rotate(extractRotDir(opcode), read8AtHl());
-            write8AtHlAndSetFlags(rotHL);
-        } break;
-        case ROT_HLR: {
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            int rotHL = rotate(extractRotDir(opcode), read8AtHl(), c);
-            write8AtHlAndSetFlags(rotHL);
-        } break;
-        case SWAP_R8: {
-            Reg r = extractReg(opcode, 0);
-            setRegFlags(r, swap(registerFile.get(r)));
-        } break;
-        case SWAP_HLR: {
-            write8AtHlAndSetFlags(swap(read8AtHl()));
-        } break;
-        case SLA_R8: {
-            Reg r = extractReg(opcode, 0);
-            setRegFlags(r, Alu.shiftLeft(registerFile.get(r)));
-        } break;
-        case SRA_R8: {
-            Reg r = extractReg(opcode, 0);
-            setRegFlags(r, Alu.shiftRightA(registerFile.get(r)));
-        } break;
-        case SRL_R8: {
-            Reg r = extractReg(opcode, 0);
-            setRegFlags(r, Alu.shiftRightL(registerFile.get(r)));
-        } break;
-        case SLA_HLR: {
-            write8AtHlAndSetFlags(Alu.shiftLeft(read8AtHl()));
-        } break;
-        case SRA_HLR: {
-            write8AtHlAndSetFlags(Alu.shiftRightA(read8AtHl()));
-        } break;
-        case SRL_HLR: {
-            write8AtHlAndSetFlags(Alu.shiftRightL(read8AtHl()));
-        } break;
-
-        // Bit test and set
-        case BIT_U3_R8: {
-            Reg r = extractReg(opcode, 0);
-            int index = extractTestIndex(opcode);
-            int tVal = testBit(registerFile.get(r), index);
-            combineAluFlags(tVal, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1,
-                    FlagSrc.CPU);
-        } break;
-        case BIT_U3_HLR: {
-            int index = extractTestIndex(opcode);
-            int tHl = testBit(read8AtHl(), index);
-            combineAluFlags(tHl, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1,
-                    FlagSrc.CPU);
-        } break;
-        case CHG_U3_R8: {
-            Reg r = extractReg(opcode, 0);
-            int n = Bits.extract(opcode.encoding, 3, 3);
-            if(extractModifier(opcode)) {
-                setRegFromAlu(r, or(registerFile.get(r),
-                        Bits.clip(8, (1 << n))));
-            } else {
-                setRegFromAlu(r, and(registerFile.get(r),
-                        Bits.clip(8,~(1 << n))));
-            }
-        } break;
-        case CHG_U3_HLR: {
-            int n = Bits.extract(opcode.encoding, 3, 3);
-            if(extractModifier(opcode)) {
-                write8AtHlAndCombineAluFlags(or(read8AtHl(),
-                        Bits.clip(8, (1 << n))),
-                        FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU);
-            } else {
-                write8AtHlAndCombineAluFlags(and(read8AtHl(),
-                        Bits.clip(8,~(1 << n))),
-                        FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU);
-            }
-        } break;
-
-        // Misc. ALU
-        case DAA: {
-            int a = registerFile.get(Reg.A);
-            boolean c = Bits.test(registerFile.get(Reg.F), 4);
-            boolean h = Bits.test(registerFile.get(Reg.F), 5);
-            boolean n = Bits.test(registerFile.get(Reg.F), 6);
-            int packA = bcdAdjust(a, n, h, c);
-            setRegFromAlu(Reg.A, packA);
-            combineAluFlags(packA, FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0,
-                    FlagSrc.ALU);
-        } break;
-        case SCCF: {
-            boolean bit3 = Bits.test(opcode.encoding, 3);
-            boolean c = !(bit3 && Bits.test(registerFile.get(Reg.F), 4));
-            FlagSrc cFlagSrc = c ? FlagSrc.V1 : FlagSrc.V0;
-
-            combineAluFlags(0, FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, cFlagSrc);
-        } break;
-
-        // Jumps
-        case JP_HL: {
-            postPC = reg16(Reg16.HL);
-        } break;
-        case JP_N16: {
+        postPC = decoded.handler.execute(this, decoded, postPC);
+
+        int nextPC = Bits.clip(16, postPC);
+        if (decoded.loopJump && nextPC <= regPC
+                && regPC - nextPC <= IdleLoopDetector.MAX_LOOP_BYTES)
+            idleLoop.backwardJump(nextPC, idleLoopRegisters(),
+                    regSP | (regIME ? 1 << 16 : 0), nextNonIdleCycle);
+        regPC = nextPC;
+    }
+
+    /**
+     * Constructs a table containing all of the opcodes and their associated
+     * commands, the direct opcodes being indexed by their encoding and the
+     * prefixed ones by their encoding plus 256.
+     * @return table containing the direct and prefixed Opcodes, with their
+     * decoded operands.
+     */
+    private static DecodedOpcode[] buildOpcodeTable() {
+        DecodedOpcode[] opcodes = new DecodedOpcode[2 * PREFIXED_OFFSET];
+        for (Opcode o: Opcode.values()) {
+            int index = o.kind == Opcode.Kind.PREFIXED
+                    ? PREFIXED_OFFSET + o.encoding : o.encoding;
+            opcodes[index] = new DecodedOpcode(o);
+        }
+        return opcodes;
+    }
+
+    /**
+     * Returns the memory accessed by the opcodes of the given family
+     * @param family the family of opcodes
+     * @return the memory accessed by the family
+     */
+    private static Access accessOf(Opcode.Family family) {
+        switch (family) {
+        case LD_R8_HLR: case LD_A_HLRU: case LD_HLR_R8: case LD_HLRU_A:
+        case LD_HLR_N8: case ADD_A_HLR: case INC_HLR: case SUB_A_HLR:
+        case DEC_HLR: case CP_A_HLR: case AND_A_HLR: case OR_A_HLR:
+        case XOR_A_HLR: case ROTC_HLR: case ROT_HLR: case SWAP_HLR:
+        case SLA_HLR: case SRA_HLR: case SRL_HLR: case BIT_U3_HLR:
+        case CHG_U3_HLR:
+            return Access.HL;
+        case LD_A_BCR: case LD_BCR_A:
+            return Access.BC;
+        case LD_A_DER: case LD_DER_A:
+            return Access.DE;
+        case LD_A_N16R: case LD_N16R_A: case LD_N16R_SP:
+            return Access.N16;
+        case LD_A_N8R: case LD_N8R_A:
+            return Access.N8_HIGH;
+        case LD_A_CR: case LD_CR_A:
+            return Access.C_HIGH;
+        case POP_R16: case PUSH_R16: case CALL_N16: case CALL_CC_N16:
+        case RST_U3: case RET: case RET_CC: case RETI:
+            return Access.STACK;
+        case HALT: case STOP:
+            return Access.NEVER_FUSED;
+        default:
+            return Access.NONE;
+        }
+    }
+
+    /**
+     * Returns the handler executing the opcodes of the given family
+     * @param family the family of opcodes
+     * @return the handler of the family
+     */
+    private static Handler handlerOf(Opcode.Family family) {
+        switch (family) {
+        case NOP: return Cpu::nop;
+        case LD_R8_HLR: return Cpu::ldR8Hlr;
+        case LD_A_HLRU: return Cpu::ldAHlru;
+        case LD_A_N8R: return Cpu::ldAN8r;
+        case LD_A_CR: return Cpu::ldACr;
+        case LD_A_N16R: return Cpu::ldAN16r;
+        case LD_A_BCR: return Cpu::ldABcr;
+        case LD_A_DER: return Cpu::ldADer;
+        case LD_R8_N8: return Cpu::ldR8N8;
+        case LD_R16SP_N16: return Cpu::ldR16spN16;
+        case POP_R16: return Cpu::popR16;
+        case LD_HLR_R8: return Cpu::ldHlrR8;
+        case LD_HLRU_A: return Cpu::ldHlruA;
+        case LD_N8R_A: return Cpu::ldN8rA;
+        case LD_CR_A: return Cpu::ldCrA;
+        case LD_N16R_A: return Cpu::ldN16rA;
+        case LD_BCR_A: return Cpu::ldBcrA;
+        case LD_DER_A: return Cpu::ldDerA;
+        case LD_HLR_N8: return Cpu::ldHlrN8;
+        case LD_N16R_SP: return Cpu::ldN16rSp;
+        case LD_R8_R8: return Cpu::ldR8R8;
+        case LD_SP_HL: return Cpu::ldSpHl;
+        case PUSH_R16: return Cpu::pushR16;
+        case ADD_A_R8: return Cpu::addAR8;
+        case ADD_A_N8: return Cpu::addAN8;
+        case ADD_A_HLR: return Cpu::addAHlr;
+        case INC_R8: return Cpu::incR8;
+        case INC_HLR: return Cpu::incHlr;
+        case INC_R16SP: return Cpu::incR16sp;
+        case ADD_HL_R16SP: return Cpu::addHlR16sp;
+        case LD_HLSP_S8: return Cpu::ldHlspS8;
+        case SUB_A_R8: return Cpu::subAR8;
+        case SUB_A_N8: return Cpu::subAN8;
+        case SUB_A_HLR: return Cpu::subAHlr;
+        case DEC_R8: return Cpu::decR8;
+        case DEC_HLR: return Cpu::decHlr;
+        case CP_A_R8: return Cpu::cpAR8;
+        case CP_A_N8: return Cpu::cpAN8;
+        case CP_A_HLR: return Cpu::cpAHlr;
+        case DEC_R16SP: return Cpu::decR16sp;
+        case AND_A_N8: return Cpu::andAN8;
+        case AND_A_R8: return Cpu::andAR8;
+        case AND_A_HLR: return Cpu::andAHlr;
+        case OR_A_R8: return Cpu::orAR8;
+        case OR_A_N8: return Cpu::orAN8;
+        case OR_A_HLR: return Cpu::orAHlr;
+        case XOR_A_R8: return Cpu::xorAR8;
+        case XOR_A_N8: return Cpu::xorAN8;
+        case XOR_A_HLR: return Cpu::xorAHlr;
+        case CPL: return Cpu::cpl;
+        case ROTCA: return Cpu::rotca;
+        case ROTA: return Cpu::rota;
+        case ROTC_R8: return Cpu::rotcR8;
+        case ROT_R8: return Cpu::rotR8;
+        case ROTC_HLR: return Cpu::rotcHlr;
+        case ROT_HLR: return Cpu::rotHlr;
+        case SWAP_R8: return Cpu::swapR8;
+        case SWAP_HLR: return Cpu::swapHlr;
+        case SLA_R8: return Cpu::slaR8;
+        case SRA_R8: return Cpu::sraR8;
+        case SRL_R8: return Cpu::srlR8;
+        case SLA_HLR: return Cpu::slaHlr;
+        case SRA_HLR: return Cpu::sraHlr;
+        case SRL_HLR: return Cpu::srlHlr;
+        case BIT_U3_R8: return Cpu::bitU3R8;
+        case BIT_U3_HLR: return Cpu::bitU3Hlr;
+        case CHG_U3_R8: return Cpu::chgU3R8;
+        case CHG_U3_HLR: return Cpu::chgU3Hlr;
+        case DAA: return Cpu::daa;
+        case SCCF: return Cpu::sccf;
+        case JP_HL: return Cpu::jpHl;
+        case JP_N16: return Cpu::jpN16;
+        case JP_CC_N16: return Cpu::jpCcN16;
+        case JR_E8: return Cpu::jrE8;
+        case JR_CC_E8: return Cpu::jrCcE8;
+        case CALL_N16: return Cpu::callN16;
+        case CALL_CC_N16: return Cpu::callCcN16;
+        case RST_U3: return Cpu::rstU3;
+        case RET: return Cpu::ret;
+        case RET_CC: return Cpu::retCc;
+        case EDI: return Cpu::edi;
+        case RETI: return Cpu::reti;
+        case HALT: return Cpu::halt;
+        case STOP: return Cpu::stop;
+        default: throw new Error("No handler for " + family);
+        }
+    }
+
+    // Handlers of the families of opcodes, which return the address of the
+    // next instruction to execute
+
+    private int nop(DecodedOpcode decoded, int postPC) {
+        return postPC;
+    }
+
+    private int ldR8Hlr(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg3;
+        registers.set(r, read8AtHl());
+        return postPC;
+    }
+
+    private int ldAHlru(DecodedOpcode decoded, int postPC) {
+        registers.setA(read8AtHl());
+        registers.setHl(Bits.clip(16,registers.hl() + decoded.hlIncrement));
+        return postPC;
+    }
+
+    private int ldAN8r(DecodedOpcode decoded, int postPC) {
+        registers.setA(read8(AddressMap.REGS_START + read8AfterOpcode()));
+        return postPC;
+    }
+
+    private int ldACr(DecodedOpcode decoded, int postPC) {
+        registers.setA(read8(AddressMap.REGS_START + registers.c()));
+        return postPC;
+    }
+
+    private int ldAN16r(DecodedOpcode decoded, int postPC) {
+        registers.setA(read8(read16AfterOpcode()));
+        return postPC;
+    }
+
+    private int ldABcr(DecodedOpcode decoded, int postPC) {
+        registers.setA(read8(registers.bc()));
+        return postPC;
+    }
+
+    private int ldADer(DecodedOpcode decoded, int postPC) {
+        registers.setA(read8(registers.de()));
+        return postPC;
+    }
+
+    private int ldR8N8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg3;
+        registers.set(r, read8AfterOpcode());
+        return postPC;
+    }
+
+    private int ldR16spN16(DecodedOpcode decoded, int postPC) {
+        Reg16 r = decoded.reg16;
+        setReg16SP(r, read16AfterOpcode());
+        return postPC;
+    }
+
+    private int popR16(DecodedOpcode decoded, int postPC) {
+        Reg16 r = decoded.reg16;
+        setReg16(r, pop16());
+        return postPC;
+    }
+
+    private int ldHlrR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        write8AtHl(registers.get(r));
+        return postPC;
+    }
+
+    private int ldHlruA(DecodedOpcode decoded, int postPC) {
+        write8AtHl(registers.a());
+        registers.setHl(Bits.clip(16, registers.hl()
+                + decoded.hlIncrement));
+        return postPC;
+    }
+
+    private int ldN8rA(DecodedOpcode decoded, int postPC) {
+        write8(AddressMap.REGS_START + read8AfterOpcode(),
+                registers.a());
+        return postPC;
+    }
+
+    private int ldCrA(DecodedOpcode decoded, int postPC) {
+        write8(AddressMap.REGS_START + registers.c(),
+                registers.a());
+        return postPC;
+    }
+
+    private int ldN16rA(DecodedOpcode decoded, int postPC) {
+        write8(read16AfterOpcode(), registers.a());
+        return postPC;
+    }
+
+    private int ldBcrA(DecodedOpcode decoded, int postPC) {
+        write8(registers.bc(), registers.a());
+        return postPC;
+    }
+
+    private int ldDerA(DecodedOpcode decoded, int postPC) {
+        write8(registers.de(), registers.a());
+        return postPC;
+    }
+
+    private int ldHlrN8(DecodedOpcode decoded, int postPC) {
+        write8AtHl(read8AfterOpcode());
+        return postPC;
+    }
+
+    private int ldN16rSp(DecodedOpcode decoded, int postPC) {
+        write16(read16AfterOpcode(), regSP);
+        return postPC;
+    }
+
+    private int ldR8R8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg3;
+        int s = decoded.reg0;
+        registers.set(r, registers.get(s));
+        return postPC;
+    }
+
+    private int ldSpHl(DecodedOpcode decoded, int postPC) {
+        regSP = registers.hl();
+        return postPC;
+    }
+
+    private int pushR16(DecodedOpcode decoded, int postPC) {
+        Reg16 r = decoded.reg16;
+        push16(reg16(r));
+        return postPC;
+    }
+
+    // Add
+    private int addAR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        boolean bit3 = decoded.bit3;
+        registers.setA(flags.add(registers.a(),
+                registers.get(r), bit3 && flags.carry()));
+        return postPC;
+    }
+
+    private int addAN8(DecodedOpcode decoded, int postPC) {
+        boolean bit3 = decoded.bit3;
+        registers.setA(flags.add(registers.a(),
+                read8AfterOpcode(), bit3 && flags.carry()));
+        return postPC;
+    }
+
+    private int addAHlr(DecodedOpcode decoded, int postPC) {
+        boolean bit3 = decoded.bit3;
+        registers.setA(flags.add(registers.a(),
+                read8AtHl(), bit3 && flags.carry()));
+        return postPC;
+    }
+
+    private int incR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg3;
+        registers.set(r, flags.inc(registers.get(r)));
+        return postPC;
+    }
+
+    private int incHlr(DecodedOpcode decoded, int postPC) {
+        write8AtHl(flags.inc(read8AtHl()));
+        return postPC;
+    }
+
+    private int incR16sp(DecodedOpcode decoded, int postPC) {
+        Reg16 r = decoded.reg16;
+        int rVal = reg16SPValue(decoded.reg16);
+        int incR = Bits.clip(16, rVal + 1);
+        setReg16SP(r, incR);
+        return postPC;
+    }
+
+    private int addHlR16sp(DecodedOpcode decoded, int postPC) {
+        int rVal = reg16SPValue(decoded.reg16);
+        int packHl = add16H(registers.hl(), rVal);
+        registers.setHl(unpackValue(packHl));
+        combineAluFlags(packHl, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU,
+                FlagSrc.ALU);
+        return postPC;
+    }
+
+    private int ldHlspS8(DecodedOpcode decoded, int postPC) {
+        int v = add16L(regSP, Bits.clip(16,
+                Bits.signExtend8(read8AfterOpcode())));
+        int e = unpackValue(v);
+        boolean b = test(decoded.opcode.encoding, 4);
+        setReg16SP(b ? Reg16.HL: Reg16.AF, e);
+        setFlags(v);
+        return postPC;
+    }
+
+    // Subtract
+    private int subAR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        boolean bit3 = decoded.bit3;
+        registers.setA(flags.sub(registers.a(),
+                registers.get(r), bit3 && flags.carry()));
+        return postPC;
+    }
+
+    private int subAN8(DecodedOpcode decoded, int postPC) {
+        boolean bit3 = decoded.bit3;
+        registers.setA(flags.sub(registers.a(),
+                read8AfterOpcode(), bit3 && flags.carry()));
+        return postPC;
+    }
+
+    private int subAHlr(DecodedOpcode decoded, int postPC) {
+        boolean bit3 = decoded.bit3;
+        registers.setA(flags.sub(registers.a(),
+                read8AtHl(), bit3 && flags.carry()));
+        return postPC;
+    }
+
+    private int decR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg3;
+        registers.set(r, flags.dec(registers.get(r)));
+        return postPC;
+    }
+
+    private int decHlr(DecodedOpcode decoded, int postPC) {
+        write8AtHl(flags.dec(read8AtHl()));
+        return postPC;
+    }
+
+    private int cpAR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        flags.sub(registers.a(), registers.get(r), false);
+        return postPC;
+    }
+
+    private int cpAN8(DecodedOpcode decoded, int postPC) {
+        flags.sub(registers.a(), read8AfterOpcode(), false);
+        return postPC;
+    }
+
+    private int cpAHlr(DecodedOpcode decoded, int postPC) {
+        flags.sub(registers.a(), read8AtHl(), false);
+        return postPC;
+    }
+
+    private int decR16sp(DecodedOpcode decoded, int postPC) {
+        Reg16 r = decoded.reg16;
+        int rVal = reg16SPValue(decoded.reg16);
+        int decR = Bits.clip(16,rVal - 1);
+        setReg16SP(r, decR);
+        return postPC;
+    }
+
+    // And, or, xor, complement
+    private int andAN8(DecodedOpcode decoded, int postPC) {
+        registers.setA(flags.and(registers.a(),
+                read8AfterOpcode()));
+        return postPC;
+    }
+
+    private int andAR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        registers.setA(flags.and(registers.a(),
+                registers.get(r)));
+        return postPC;
+    }
+
+    private int andAHlr(DecodedOpcode decoded, int postPC) {
+        registers.setA(flags.and(registers.a(), read8AtHl()));
+        return postPC;
+    }
+
+    private int orAR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        registers.setA(flags.or(registers.a(),
+                registers.get(r)));
+        return postPC;
+    }
+
+    private int orAN8(DecodedOpcode decoded, int postPC) {
+        registers.setA(flags.or(registers.a(), read8AfterOpcode()));
+        return postPC;
+    }
+
+    private int orAHlr(DecodedOpcode decoded, int postPC) {
+        registers.setA(flags.or(registers.a(), read8AtHl()));
+        return postPC;
+    }
+
+    private int xorAR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        registers.setA(flags.xor(registers.a(),
+                registers.get(r)));
+        return postPC;
+    }
+
+    private int xorAN8(DecodedOpcode decoded, int postPC) {
+        registers.setA(flags.xor(registers.a(),
+                read8AfterOpcode()));
+        return postPC;
+    }
+
+    private int xorAHlr(DecodedOpcode decoded, int postPC) {
+        registers.setA(flags.xor(registers.a(), read8AtHl()));
+        return postPC;
+    }
+
+    private int cpl(DecodedOpcode decoded, int postPC) {
+        int notA = complement8(registers.a());
+        combineAluFlags(0, FlagSrc.CPU, FlagSrc.V1,
+                FlagSrc.V1, FlagSrc.CPU);
+        registers.setA(notA);
+        return postPC;
+    }
+
+    // Rotate, shift
+    private int rotca(DecodedOpcode decoded, int postPC) {
+        int rot = rotate(decoded.rotDir, registers.a());
+        combineAluFlags(rot, FlagSrc.V0, FlagSrc.V0,
+                FlagSrc.V0, FlagSrc.ALU);
+        setRegFromAlu(Registers.A, rot);
+        return postPC;
+    }
+
+    private int rota(DecodedOpcode decoded, int postPC) {
+        boolean c = flags.carry();
+        int rot = rotate(decoded.rotDir, registers.a(), c);
+        combineAluFlags(rot, FlagSrc.V0, FlagSrc.V0,
+                FlagSrc.V0, FlagSrc.ALU);
+        setRegFromAlu(Registers.A, rot);
+        return postPC;
+    }
+
+    private int rotcR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        int rot = rotate(decoded.rotDir, registers.get(r));
+        setRegFlags(r, rot);
+        return postPC;
+    }
+
+    private int rotR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        boolean c = flags.carry();
+        int rot = rotate(decoded.rotDir, registers.get(r), c);
+        setRegFlags(r, rot);
+        return postPC;
+    }
+
+    private int rotcHlr(DecodedOpcode decoded, int postPC) {
+        int rotHL = rotate(decoded.rotDir, read8AtHl());
+        write8AtHlAndSetFlags(rotHL);
+        return postPC;
+    }
+
+    private int rotHlr(DecodedOpcode decoded, int postPC) {
+        boolean c = flags.carry();
+        int rotHL = rotate(decoded.rotDir, read8AtHl(), c);
+        write8AtHlAndSetFlags(rotHL);
+        return postPC;
+    }
+
+    private int swapR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        setRegFlags(r, swap(registers.get(r)));
+        return postPC;
+    }
+
+    private int swapHlr(DecodedOpcode decoded, int postPC) {
+        write8AtHlAndSetFlags(swap(read8AtHl()));
+        return postPC;
+    }
+
+    private int slaR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        setRegFlags(r, Alu.shiftLeft(registers.get(r)));
+        return postPC;
+    }
+
+    private int sraR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        setRegFlags(r, Alu.shiftRightA(registers.get(r)));
+        return postPC;
+    }
+
+    private int srlR8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        setRegFlags(r, Alu.shiftRightL(registers.get(r)));
+        return postPC;
+    }
+
+    private int slaHlr(DecodedOpcode decoded, int postPC) {
+        write8AtHlAndSetFlags(Alu.shiftLeft(read8AtHl()));
+        return postPC;
+    }
+
+    private int sraHlr(DecodedOpcode decoded, int postPC) {
+        write8AtHlAndSetFlags(Alu.shiftRightA(read8AtHl()));
+        return postPC;
+    }
+
+    private int srlHlr(DecodedOpcode decoded, int postPC) {
+        write8AtHlAndSetFlags(Alu.shiftRightL(read8AtHl()));
+        return postPC;
+    }
+
+    // Bit test and set
+    private int bitU3R8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        int index = decoded.index3;
+        int tVal = testBit(registers.get(r), index);
+        combineAluFlags(tVal, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1,
+                FlagSrc.CPU);
+        return postPC;
+    }
+
+    private int bitU3Hlr(DecodedOpcode decoded, int postPC) {
+        int index = decoded.index3;
+        int tHl = testBit(read8AtHl(), index);
+        combineAluFlags(tHl, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1,
+                FlagSrc.CPU);
+        return postPC;
+    }
+
+    private int chgU3R8(DecodedOpcode decoded, int postPC) {
+        int r = decoded.reg0;
+        int n = decoded.index3;
+        if(decoded.modifier) {
+            setRegFromAlu(r, or(registers.get(r),
+                    Bits.clip(8, (1 << n))));
+        } else {
+            setRegFromAlu(r, and(registers.get(r),
+                    Bits.clip(8,~(1 << n))));
+        }
+        return postPC;
+    }
+
+    private int chgU3Hlr(DecodedOpcode decoded, int postPC) {
+        int n = decoded.index3;
+        if(decoded.modifier) {
+            write8AtHlAndCombineAluFlags(or(read8AtHl(),
+                    Bits.clip(8, (1 << n))),
+                    FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU);
+        } else {
+            write8AtHlAndCombineAluFlags(and(read8AtHl(),
+                    Bits.clip(8,~(1 << n))),
+                    FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU, FlagSrc.CPU);
+        }
+        return postPC;
+    }
+
+    // Misc. ALU
+    private int daa(DecodedOpcode decoded, int postPC) {
+        int a = registers.a();
+        int f = flags.get();
+        boolean c = Bits.test(f, Flag.C);
+        boolean h = Bits.test(f, Flag.H);
+        boolean n = Bits.test(f, Flag.N);
+        int packA = bcdAdjust(a, n, h, c);
+        setRegFromAlu(Registers.A, packA);
+        combineAluFlags(packA, FlagSrc.ALU, FlagSrc.CPU, FlagSrc.V0,
+                FlagSrc.ALU);
+        return postPC;
+    }
+
+    private int sccf(DecodedOpcode decoded, int postPC) {
+        boolean bit3 = decoded.bit3;
+        boolean c = !(bit3 && flags.carry());
+        FlagSrc cFlagSrc = c ? FlagSrc.V1 : FlagSrc.V0;
+
+        combineAluFlags(0, FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, cFlagSrc);
+        return postPC;
+    }
+
+    // Jumps
+    private int jpHl(DecodedOpcode decoded, int postPC) {
+        postPC = registers.hl();
+        return postPC;
+    }
+
+    private int jpN16(DecodedOpcode decoded, int postPC) {
+        postPC = read16AfterOpcode();
+        return postPC;
+    }
+
+    private int jpCcN16(DecodedOpcode decoded, int postPC) {
+        if (getCondition(decoded.condition)) {
             postPC = read16AfterOpcode();
-        } break;
-        case JP_CC_N16: {
-            if (getCondition(opcode)) {
-                postPC = read16AfterOpcode();
-                nextNonIdleCycle += opcode.additionalCycles;
-            }
-        } break;
-        case JR_E8: {
+            nextNonIdleCycle += decoded.opcode.additionalCycles;
+        }
+        return postPC;
+    }
+
+    private int jrE8(DecodedOpcode decoded, int postPC) {
+        postPC += Bits.clip(16, Bits.signExtend8(read8AfterOpcode()));
+        return postPC;
+    }
+
+    private int jrCcE8(DecodedOpcode decoded, int postPC) {
+        if(getCondition(decoded.condition)) {
             postPC += Bits.clip(16, Bits.signExtend8(read8AfterOpcode()));
-        } break;
-        case JR_CC_E8: {
-            if(getCondition(opcode)) {
-                postPC += Bits.clip(16, Bits.signExtend8(read8AfterOpcode()));
-                nextNonIdleCycle += opcode.additionalCycles;
-            }
-        } break;
+            nextNonIdleCycle += decoded.opcode.additionalCycles;
+        }
+        return postPC;
+    }
 
-        // Calls and returns
-        case CALL_N16: {
+    // Calls and returns
+    private int callN16(DecodedOpcode decoded, int postPC) {
+        push16(postPC);
+        postPC = read16AfterOpcode();
+        return postPC;
+    }
+
+    private int callCcN16(DecodedOpcode decoded, int postPC) {
+        if(getCondition(decoded.condition)) {
             push16(postPC);
             postPC = read16AfterOpcode();
-        } break;
-        case CALL_CC_N16: {
-            if(getCondition(opcode)) {
-                push16(postPC);
-                postPC = read16AfterOpcode();
-                nextNonIdleCycle += opcode.additionalCycles;
-            }
-        } break;
-        case RST_U3: {
-            int n = Bits.extract(opcode.encoding, 3, 3);
-            push16(postPC);
-            postPC = AddressMap.RESETS[n];
-        } break;
-        case RET: {
-            postPC = pop16();
-        } break;
-        case RET_CC: {
-            if(getCondition(opcode)) {
-                postPC = pop16();
-                nextNonIdleCycle += opcode.additionalCycles;
-            }
-        } break;
-
-        // Interrupts
-        case EDI: {
-            regIME =  Bits.test(opcode.encoding, 3);
-        } break;
-        case RETI: {
-            regIME = true;
-            postPC = pop16();
-        } break;
-
-        // Misc control
-        case HALT: {
-            nextNonIdleCycle = Long.MAX_VALUE;
-        } break;
-        case STOP: {
-            throw new Error("STOP is not implemented");
+            nextNonIdleCycle += decoded.opcode.additionalCycles;
         }
+        return postPC;
+    }
+
+    private int rstU3(DecodedOpcode decoded, int postPC) {
+        int n = decoded.index3;
+        push16(postPC);
+        postPC = AddressMap.RESETS[n];
+        return postPC;
+    }
+
+    private int ret(DecodedOpcode decoded, int postPC) {
+        postPC = pop16();
+        return postPC;
+    }
+
+    private int retCc(DecodedOpcode decoded, int postPC) {
+        if(getCondition(decoded.condition)) {
+            postPC = pop16();
+            nextNonIdleCycle += decoded.opcode.additionalCycles;
         }
-        regPC = Bits.clip(16, postPC);
+        return postPC;
+    }
+
+    // Interrupts
+    private int edi(DecodedOpcode decoded, int postPC) {
+        regIME =  decoded.bit3;
+        return postPC;
+    }
+
+    private int reti(DecodedOpcode decoded, int postPC) {
+        regIME = true;
+        postPC = pop16();
+        return postPC;
+    }
+
+    // Misc control
+    private int halt(DecodedOpcode decoded, int postPC) {
+        haltStart = nextNonIdleCycle;
+        nextNonIdleCycle = Long.MAX_VALUE;
+        return postPC;
+    }
+
+    private int stop(DecodedOpcode decoded, int postPC) {
+        throw new Error("STOP is not implemented");
     }
 
     /**
-     * Constructs a table containing all of the opcodes and their associated
-     * commands.
-     * @param kind the type of Opcode that will be in the table
-     * @return table containing either the direct Opcodes the prefixed Opcodes.
+     * @return the 8bit registers, F included, packed in a long
      */
-    private static Opcode[] buildOpcodeTable(Opcode.Kind kind) {
-        Opcode[] opcodes = new Opcode[256];
-        for (Opcode o: Opcode.values()) {
-            if(o.kind == kind) {
-                opcodes[o.encoding] = o;
-            }
-        }
-        return opcodes;
+    private long idleLoopRegisters() {
+        return registers.pack(flags.get());
     }
 
     /**
@@ -648,6 +1275,11 @@ public final class Cpu implements Clocked, Component {
      * @return 8bit value
      */
     private int read8(int address) {
+        //The timer computes these registers when they are read
+        if (address == AddressMap.REG_DIV || address == AddressMap.REG_TIMA)
+            idleLoop.abort();
+        if (isBusLocked(address))
+            return 0xFF;
         int value = aBus.read(address);
         Preconditions.checkBits8(value);
 
@@ -660,7 +1292,7 @@ public final class Cpu implements Clocked, Component {
      * @return 8bit value
      */
     private int read8AtHl() {
-        int index = reg16(Reg16.HL);
+        int index = registers.hl();
 
         return read8(index);
     }
@@ -701,9 +1333,25 @@ public final class Cpu implements Clocked, Component {
      * @param v 8bit value to be written at address
      */
     private void write8(int address, int v) {
+        if (isBusLocked(address))
+            return;
+        if (!isTimeless(address))
+            timedWrite = true;
         this.aBus.write(address, v);
     }
 
+    /**
+     * Determines whether an OAM DMA prevents the current instruction from
+     * accessing the given address
+     * @param address the address accessed
+     * @return true iff the access must be ignored
+     */
+    private boolean isBusLocked(int address) {
+        return nextNonIdleCycle < busLockEnd
+                && !(AddressMap.HIGH_RAM_START <= address
+                && address < AddressMap.HIGH_RAM_END);
+    }
+
     /**
      * Writes the given 16bit value v at the given address in the Bus.
      * @param address to write at
@@ -719,7 +1367,7 @@ public final class Cpu implements Clocked, Component {
      * @param v 8bit value to write at register pair HL
      */
     private void write8AtHl(int v) {
-        int index = reg16(Reg16.HL);
+        int index = registers.hl();
         write8(index, v);
     }
 
@@ -750,11 +1398,14 @@ public final class Cpu implements Clocked, Component {
      * Reads the value found in the given Register pair.
      * @param r, the 16bit register pair
      * @return the value extracted from said register pair
-     * @throws IllegalArgumentException when you pass a non-implemented reg16
-     * to it
      */
     private int reg16(Reg16 r) {
-        return make16(registerFile.get(r.highReg), registerFile.get(r.lowReg));
+        switch (r) {
+        case AF: return make16(registers.a(), flags.get());
+        case BC: return registers.bc();
+        case DE: return registers.de();
+        default: return registers.hl();
+        }
     }
 
     /**
@@ -765,13 +1416,21 @@ public final class Cpu implements Clocked, Component {
      */
     private void setReg16(Reg16 r, int newV) {
         Preconditions.checkBits16(newV);
-        //int LSB = Bits.clip(8, newV);
-        int MSB = Bits.extract(newV, 8, 8);
-        int masked = r.lowReg == Reg.F ?
-                Alu.maskZNHC(true, true, true,true) : 0b11111111;
 
-        registerFile.set(r.highReg, MSB);
-        registerFile.set(r.lowReg, newV & masked);
+        switch (r) {
+        case AF:
+            registers.setA(Bits.extract(newV, 8, 8));
+            flags.set(newV & Alu.maskZNHC(true, true, true, true));
+            break;
+        case BC:
+            registers.setBc(newV);
+            break;
+        case DE:
+            registers.setDe(newV);
+            break;
+        default:
+            registers.setHl(newV);
+        }
     }
 
     /**
@@ -791,46 +1450,33 @@ public final class Cpu implements Clocked, Component {
         }
     }
 
+    /**
+     * Checks whether the 3 bits of the opcode at the given startBit encode an
+     * 8bit register, rather than the memory location pointed to by HL.
+     * @param opcode from which we get the registry identity
+     * @param startBit from where to start looking
+     * @return true iff extractReg can be called on the same arguments
+     */
+    private static boolean isRegEncoded(Opcode opcode, int startBit) {
+        return Bits.extract(opcode.encoding, startBit, 3) != 0b110;
+    }
+
     /**
      * Extracts and returns the identity of an 8bit registry from a given
      * opcode, at the given startBit
      * @param opcode from which we get the registry identity
      * @param startBit from where to start looking
-     * @return the registry identity
+     * @return the index of the registry, as encoded in the opcode
      * @throws IllegalArgumentException if the encoded registry isn't valid
      * @throws IndexOutOfBoundsException if the index is bigger than 5 (need to
      * get a 3bit value after it, out of an 8bit value)
      */
-    private Reg extractReg(Opcode opcode, int startBit) {
+    private static int extractReg(Opcode opcode, int startBit) {
 
         Objects.checkIndex(startBit, 6);
 
-        switch(Bits.extract(opcode.encoding, startBit, 3)){
-        case 0b111:{
-            return Reg.A;
-        }
-        case 0b000:{
-            return Reg.B;
-        }
-        case 0b001:{
-            return Reg.C;
-        }
-        case 0b010:{
-            return Reg.D;
-        }
-        case 0b011:{
-            return Reg.E;
-        }
-        case 0b100: {
-            return Reg.H;
-        }
-        case 0b101:{
-            return Reg.L;
-        }
-        default:{
-            throw new IllegalArgumentException();
-        }
-        }
+        return Registers.checkIndex(
+                Bits.extract(opcode.encoding, startBit, 3));
     }
 
     /**
@@ -839,18 +1485,17 @@ public final class Cpu implements Clocked, Component {
      * @param opcode from which we get the registry identity
      * @return the registry identity
      */
-    private Reg16 extractReg16(Opcode opcode) {
-        return regs[Bits.extract(opcode.encoding, 4, 2)];
+    private static Reg16 extractReg16(Opcode opcode) {
+        return REGS16[Bits.extract(opcode.encoding, 4, 2)];
     }
 
     /**
-     * Returns the value stored in the 16bit register given by the opcode,
-     * where we get SP when we would get AF.
-     * @param opcode from which we get the 16bit register
+     * Returns the value stored in the given 16bit register, where we get SP
+     * when we would get AF.
+     * @param r the 16bit register
      * @return the value of the 16bit register (getting SP instead of AF)
      */
-    private int extractReg16SPValue(Opcode opcode) {
-        Reg16 r = extractReg16(opcode);
+    private int reg16SPValue(Reg16 r) {
         if (r == Reg16.AF) {
             return regSP;
         } else {
@@ -863,7 +1508,7 @@ public final class Cpu implements Clocked, Component {
      * @param opcode the command given via an opcode.
      * @return 1 or -1 depending on which command is given .
      */
-    private int extractHlIncrement(Opcode opcode) {
+    private static int extractHlIncrement(Opcode opcode) {
         return Bits.test(opcode.encoding, 4) ? -1 : 1;
     }
 
@@ -897,17 +1542,17 @@ public final class Cpu implements Clocked, Component {
     }
 
     /**
-     * Tests the condition stored in the given opcode
-     * @param opcode, the given opcode containing the condition
+     * Tests the given condition, as encoded in bits 3 and 4 of an opcode
+     * @param condition, the condition decoded from an opcode (NZ, Z, NC, C)
      * @return true of the condition is true, false otherwise.
      */
-    private boolean getCondition(Opcode opcode) {
-        boolean z = Bits.test(registerFile.get(Reg.F), 7);
-        boolean c = Bits.test(registerFile.get(Reg.F), 4);
-
-        boolean[] conditions = new boolean[] { !z, z, !c, c };
-
-        return conditions[Bits.extract(opcode.encoding, 3, 2)];
+    private boolean getCondition(int condition) {
+        switch (condition) {
+        case 0: return !flags.zero();
+        case 1: return flags.zero();
+        case 2: return !flags.carry();
+        default: return flags.carry();
+        }
     }
 
     /**
@@ -915,8 +1560,8 @@ public final class Cpu implements Clocked, Component {
      * @param r register
      * @param vf value/flags package
      */
-    private void setRegFromAlu(Reg r, int vf){
-        registerFile.set(r, Alu.unpackValue(vf));
+    private void setRegFromAlu(int r, int vf){
+        registers.set(r, Alu.unpackValue(vf));
     }
 
     /**
@@ -924,7 +1569,7 @@ public final class Cpu implements Clocked, Component {
      * @param valueFlags value/flags package
      */
     private void setFlags(int valueFlags){
-        registerFile.set(Reg.F, Alu.unpackFlags(valueFlags));
+        flags.set(Alu.unpackFlags(valueFlags));
     }
 
     /**
@@ -933,7 +1578,7 @@ public final class Cpu implements Clocked, Component {
      * @param r given register
      * @param vf value/flags package
      */
-    private void setRegFlags(Reg r, int vf){
+    private void setRegFlags(int r, int vf){
         setRegFromAlu(r, vf);
         setFlags(vf);
     }
@@ -986,8 +1631,8 @@ public final class Cpu implements Clocked, Component {
         int maskV1  = maskZNHC(z == FlagSrc.V1, n == FlagSrc.V1,
                 h == FlagSrc.V1, c == FlagSrc.V1);
 
-        registerFile.set(Reg.F, (unpackFlags(vf) & maskALU) |
-                (registerFile.get(Reg.F) & maskCPU) | maskV1 );
+        flags.set((unpackFlags(vf) & maskALU) | (flags.get() & maskCPU)
+                | maskV1);
     }
 
     /**
@@ -0,0 +1,143 @@
+package ch.epfl.gameboj.component.cpu;
+
+/**
+ * Detector of the idle loops of the CPU, in which a game polls registers,
+ * for example LY, waiting for them to change.
+ *
+ * A loop is tracked from the target of a short backward jump to the next
+ * jump back to it. When one of its iterations only executed instructions
+ * that write nothing and only read memory whose content can't change while
+ * the other components are idle, and ends in the same CPU state as it
+ * started, every following iteration is identical to it until another
+ * component acts. These iterations can therefore be skipped, as long as
+ * the CPU resumes at the start of an iteration.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+final class IdleLoopDetector {
+    //Maximum number of bytes between the start and the end of a loop
+    static final int MAX_LOOP_BYTES = 16;
+    private static final int MAX_LOOP_INSTRUCTIONS = 16;
+    private static final int NO_LOOP = -1;
+    private static final long UNKNOWN = -1;
+
+    //Loop being tracked, NO_LOOP if none
+    private int head = NO_LOOP;
+    private long headRegisters;
+    private long headSpIme;
+    //Cycle at which the current iteration started
+    private long start;
+    //Next event of the other components after the start of the iteration
+    private long startNextEvent;
+    private int instructions;
+
+    //Last iteration proven to be repeated identically, if any
+    private boolean repeated;
+    private long repeatStart;
+    private long repeatNextEvent;
+    private long period;
+    private int periodInstructions;
+
+    /**
+     * @return true iff a loop is being tracked
+     */
+    boolean isTracking() {
+        return head != NO_LOOP;
+    }
+
+    /**
+     * Stops tracking the current loop, for example because the CPU executed
+     * an instruction with side effects
+     */
+    void abort() {
+        head = NO_LOOP;
+        repeated = false;
+    }
+
+    /**
+     * Counts an instruction without side effects executed in the loop
+     */
+    void executed() {
+        if (++instructions > MAX_LOOP_INSTRUCTIONS)
+            abort();
+    }
+
+    /**
+     * Handles a short backward jump, which ends the current iteration of the
+     * loop starting at its target and starts the next one
+     * @param target the target of the jump
+     * @param registers the CPU's 8bit registers, packed
+     * @param spIme the CPU's SP and IME, packed
+     * @param nextCycle the cycle at which the target is executed
+     */
+    void backwardJump(int target, long registers, long spIme,
+            long nextCycle) {
+        repeated = head == target && registers == headRegisters
+                && spIme == headSpIme && startNextEvent != UNKNOWN;
+        if (repeated) {
+            repeatStart = nextCycle;
+            repeatNextEvent = startNextEvent;
+            period = nextCycle - start;
+            periodInstructions = instructions;
+        }
+
+        head = target;
+        headRegisters = registers;
+        headSpIme = spIme;
+        restart(nextCycle);
+    }
+
+    /**
+     * Returns the number of iterations of the loop that can be skipped
+     * before another component acts
+     * @param cycle the current cycle
+     * @param nextCycle the next cycle at which the CPU executes an
+     *                  instruction
+     * @param nextEvent the next cycle at which another component may act
+     * @return the number of iterations that can be skipped, each one lasting
+     * period() cycles
+     */
+    long skippableIterations(long cycle, long nextCycle, long nextEvent) {
+        //The first prediction made after the start of the iteration, or
+        //made before it but beyond it, is the first event following it
+        if (isTracking() && startNextEvent == UNKNOWN
+                && (cycle > start || nextEvent > start))
+            startNextEvent = nextEvent;
+
+        if (!repeated || nextCycle != repeatStart)
+            return 0;
+
+        repeated = false;
+        long iterations = Math.max(0,
+                (repeatNextEvent - repeatStart) / period);
+        if (iterations > 0)
+            restart(repeatStart + iterations * period);
+        return iterations;
+    }
+
+    /**
+     * @return the number of cycles of an iteration of the loop that can be
+     * skipped
+     */
+    long period() {
+        return period;
+    }
+
+    /**
+     * @return the number of instructions of an iteration of the loop that
+     * can be skipped
+     */
+    int periodInstructions() {
+        return periodInstructions;
+    }
+
+    /**
+     * Starts a new iteration of the tracked loop at the given cycle
+     */
+    private void restart(long cycle) {
+        start = cycle;
+        startNextEvent = UNKNOWN;
+        instructions = 0;
+    }
+}
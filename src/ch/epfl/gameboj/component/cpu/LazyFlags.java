@@ -0,0 +1,199 @@
+package ch.epfl.gameboj.component.cpu;
+
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.cpu.Alu.Flag;
+
+/**
+ * Class representing the CPU's flag register F, whose flags are only
+ * computed when they are actually needed.
+ * The most common 8bit operations don't compute their flags: they only
+ * record their kind, operands and result, from which the flags are derived
+ * once F is read. Most of these flags are overwritten before ever being read.
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+final class LazyFlags {
+
+    /**
+     * The operations whose flags can be computed lazily
+     */
+    private enum Op {
+        NONE, ADD, SUB, AND, OR_XOR, INC, DEC
+    }
+
+    private Op op;
+    private int flags;
+    private int l, r, carryIn, result;
+    private boolean previousCarry;
+
+    /**
+     * Constructs a flag register with all its flags set to 0
+     */
+    LazyFlags() {
+        op = Op.NONE;
+        flags = 0;
+    }
+
+    /**
+     * Returns the value of the register F, computing it if necessary
+     * @return the flags in the form 0bZNHC0000
+     */
+    int get() {
+        if (op != Op.NONE) {
+            flags = compute();
+            op = Op.NONE;
+        }
+        return flags;
+    }
+
+    /**
+     * Sets the value of the register F
+     * @param flags the flags in the form 0bZNHC0000
+     */
+    void set(int flags) {
+        this.flags = flags;
+        op = Op.NONE;
+    }
+
+    /**
+     * @return the value of the flag Z
+     */
+    boolean zero() {
+        return op == Op.NONE ? Bits.test(flags, Flag.Z) : result == 0;
+    }
+
+    /**
+     * @return the value of the flag C
+     */
+    boolean carry() {
+        switch (op) {
+        case NONE:
+            return Bits.test(flags, Flag.C);
+        case ADD:
+            return l + r + carryIn > Alu.MAX_8BITS;
+        case SUB:
+            return l < r + carryIn;
+        case INC: case DEC:
+            return previousCarry;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Adds two 8bit values with an initial carry, recording the Z0HC flags
+     * @param l first 8bit value
+     * @param r second 8bit value
+     * @param c initial carry
+     * @return the 8bit sum
+     */
+    int add(int l, int r, boolean c) {
+        return record(Op.ADD, l, r, c, l + r + (c ? 1 : 0));
+    }
+
+    /**
+     * Subtracts two 8bit values with an initial borrow, recording the Z1HC
+     * flags
+     * @param l first 8bit value
+     * @param r second 8bit value
+     * @param b initial borrow
+     * @return the 8bit difference
+     */
+    int sub(int l, int r, boolean b) {
+        return record(Op.SUB, l, r, b, l - r - (b ? 1 : 0));
+    }
+
+    /**
+     * Computes the "and" of two 8bit values, recording the Z010 flags
+     * @param l first 8bit value
+     * @param r second 8bit value
+     * @return l & r
+     */
+    int and(int l, int r) {
+        return record(Op.AND, l, r, false, l & r);
+    }
+
+    /**
+     * Computes the "or" of two 8bit values, recording the Z000 flags
+     * @param l first 8bit value
+     * @param r second 8bit value
+     * @return l | r
+     */
+    int or(int l, int r) {
+        return record(Op.OR_XOR, l, r, false, l | r);
+    }
+
+    /**
+     * Computes the "xor" of two 8bit values, recording the Z000 flags
+     * @param l first 8bit value
+     * @param r second 8bit value
+     * @return l ^ r
+     */
+    int xor(int l, int r) {
+        return record(Op.OR_XOR, l, r, false, l ^ r);
+    }
+
+    /**
+     * Increments an 8bit value, recording the Z0H flags and keeping C
+     * @param v the 8bit value
+     * @return v + 1, clipped to 8 bits
+     */
+    int inc(int v) {
+        boolean c = carry();
+        int incV = record(Op.INC, v, 1, false, v + 1);
+        previousCarry = c;
+        return incV;
+    }
+
+    /**
+     * Decrements an 8bit value, recording the Z1H flags and keeping C
+     * @param v the 8bit value
+     * @return v - 1, clipped to 8 bits
+     */
+    int dec(int v) {
+        boolean c = carry();
+        int decV = record(Op.DEC, v, 1, false, v - 1);
+        previousCarry = c;
+        return decV;
+    }
+
+    /**
+     * Records the given operation instead of computing its flags
+     * @return the result of the operation, clipped to 8 bits
+     */
+    private int record(Op op, int l, int r, boolean c, int result) {
+        this.op = op;
+        this.l = l;
+        this.r = r;
+        this.carryIn = c ? 1 : 0;
+        this.result = Bits.clip(Byte.SIZE, result);
+        return this.result;
+    }
+
+    /**
+     * Computes the flags of the recorded operation
+     * @return the flags in the form 0bZNHC0000
+     */
+    private int compute() {
+        boolean z = result == 0;
+
+        switch (op) {
+        case ADD:
+            return Alu.addFlags(l, r, carryIn);
+        case SUB:
+            return Alu.subFlags(l, r, carryIn);
+        case AND:
+            return Alu.maskZNHC(z, false, true, false);
+        case OR_XOR:
+            return Alu.maskZNHC(z, false, false, false);
+        case INC:
+            return Alu.maskZNHC(z, false, Bits.clip(4, l) == Alu.MAX_4BITS,
+                    previousCarry);
+        case DEC:
+            return Alu.maskZNHC(z, true, Bits.clip(4, l) == 0,
+                    previousCarry);
+        default:
+            return flags;
+        }
+    }
+}
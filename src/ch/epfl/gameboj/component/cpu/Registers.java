@@ -0,0 +1,181 @@
+package ch.epfl.gameboj.component.cpu;
+
+import ch.epfl.gameboj.Stateful;
+import ch.epfl.gameboj.bits.Bits;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The CPU's 8bit registers A, B, C, D, E, H and L, stored in fields so that
+ * the registers and the pairs they form are accessed without any
+ * indirection. Register F is kept by LazyFlags.
+ * The values given to the setters are not checked: the CPU only computes
+ * values of the right size.
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+final class Registers implements Stateful {
+    //Indices of the registers, as encoded in the opcodes
+    static final int B = 0b000;
+    static final int C = 0b001;
+    static final int D = 0b010;
+    static final int E = 0b011;
+    static final int H = 0b100;
+    static final int L = 0b101;
+    static final int A = 0b111;
+
+    private int a, b, c, d, e, h, l;
+
+    /**
+     * Checks that the given index, as encoded in an opcode, is the one of a
+     * register
+     * @param index the 3bit index
+     * @return the index
+     * @throws IllegalArgumentException if the index is the one of the memory
+     * location pointed to by HL
+     */
+    static int checkIndex(int index) {
+        if (index < B || index > A || index == 0b110)
+            throw new IllegalArgumentException();
+        return index;
+    }
+
+    /**
+     * Gets the value of the register of the given index
+     * @param index the index of the register, as encoded in opcodes
+     * @return an 8bit value
+     */
+    int get(int index) {
+        switch (index) {
+        case B: return b;
+        case C: return c;
+        case D: return d;
+        case E: return e;
+        case H: return h;
+        case L: return l;
+        default: return a;
+        }
+    }
+
+    /**
+     * Sets the value of the register of the given index
+     * @param index the index of the register, as encoded in opcodes
+     * @param v the new 8bit value
+     */
+    void set(int index, int v) {
+        switch (index) {
+        case B: b = v; break;
+        case C: c = v; break;
+        case D: d = v; break;
+        case E: e = v; break;
+        case H: h = v; break;
+        case L: l = v; break;
+        default: a = v;
+        }
+    }
+
+    /**
+     * @return the value of register A
+     */
+    int a() {
+        return a;
+    }
+
+    /**
+     * Sets the value of register A
+     * @param v the new 8bit value
+     */
+    void setA(int v) {
+        a = v;
+    }
+
+    /**
+     * @return the value of register C
+     */
+    int c() {
+        return c;
+    }
+
+    /**
+     * @return the value of the pair BC
+     */
+    int bc() {
+        return b << 8 | c;
+    }
+
+    /**
+     * @return the value of the pair DE
+     */
+    int de() {
+        return d << 8 | e;
+    }
+
+    /**
+     * @return the value of the pair HL
+     */
+    int hl() {
+        return h << 8 | l;
+    }
+
+    /**
+     * Sets the value of the pair BC
+     * @param v the new 16bit value
+     */
+    void setBc(int v) {
+        b = v >>> 8;
+        c = Bits.clip(8, v);
+    }
+
+    /**
+     * Sets the value of the pair DE
+     * @param v the new 16bit value
+     */
+    void setDe(int v) {
+        d = v >>> 8;
+        e = Bits.clip(8, v);
+    }
+
+    /**
+     * Sets the value of the pair HL
+     * @param v the new 16bit value
+     */
+    void setHl(int v) {
+        h = v >>> 8;
+        l = Bits.clip(8, v);
+    }
+
+    /**
+     * Packs the registers, in the order A, B, C, D, E, H, L, with the given
+     * value of register F after A
+     * @param f the value of register F
+     * @return the 8 registers packed in a long
+     */
+    long pack(int f) {
+        return (long) a << 56 | (long) f << 48 | (long) b << 40
+                | (long) c << 32 | (long) d << 24 | e << 16 | h << 8 | l;
+    }
+
+    /**
+     * Writes the registers in the order A, F, B, C, D, E, H, L, the byte of
+     * register F being 0 as it is saved with LazyFlags
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) a).put((byte) 0)
+                .put((byte) b).put((byte) c)
+                .put((byte) d).put((byte) e)
+                .put((byte) h).put((byte) l);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        a = Byte.toUnsignedInt(buffer.get());
+        buffer.get();
+        b = Byte.toUnsignedInt(buffer.get());
+        c = Byte.toUnsignedInt(buffer.get());
+        d = Byte.toUnsignedInt(buffer.get());
+        e = Byte.toUnsignedInt(buffer.get());
+        h = Byte.toUnsignedInt(buffer.get());
+        l = Byte.toUnsignedInt(buffer.get());
+    }
+}
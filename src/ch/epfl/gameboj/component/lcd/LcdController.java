@@ -8,6 +8,8 @@ import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.memory.Ram;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -17,16 +19,16 @@ import java.util.Objects;
  * @author Andrew Dobis (Sciper: 272002)
  * @author Matthieu De Beule (Sciper: 269623)
  */
-public class LcdController implements Component, Clocked {
+public class LcdController implements Component, Clocked, Stateful {
     public static final int LCD_WIDTH = 160;
     public static final int LCD_HEIGHT = 144;
+    public static final int IMAGE_CYCLES = 17556;
     private static final int BG_SIZE = 256;
 
     private static final int MODE_2_CYCLES = 20;
     private static final int MODE_3_CYCLES = 43;
     private static final int H_BLANK_CYCLES = 51;
     private static final int DRAW_CYCLES = 114;
-    private static final int IMAGE_CYCLES = 17556;
 
     private static final int TILE_SIZE = 8;
     private static final int NUMBER_OF_TILES = 32;
@@ -48,20 +50,50 @@ public class LcdController implements Component, Clocked {
     private final RegisterFile<Reg> regs;
     private final Ram videoRam;
     private final Ram oam;
+    private final TileCache tileCache;
 
     private final Cpu cpu;
     private Bus bus;
     private long nextNonIdleCycle;
-    private long cycle;
     private int winY = 0;
+    private long lcdOnCycle = 0;
+    //Last cycle given to cycle
+    private long lastCycle = -1;
+
+    //The OAM DMA copies byte i at cycle dmaStart + i, but the bytes are only
+    //actually copied, all at once, when the OAM is next accessed or at the
+    //end of the transfer. This is exact as the CPU can't modify the source
+    //in the meantime: it can only access the high RAM during the transfer.
+    //copyStatus is the number of bytes copied so far.
     private int copyStatus;
-    private int lcdOnCycle = 0;
+    private long dmaStart;
 
+    //The frames are double-buffered: the next image is drawn in nextPixels
+    //while currentImage, backed by currentPixels, is displayed
+    private int[] currentPixels;
+    private int[] nextPixels;
     private LcdImage currentImage;
-    private LcdImage.Builder nextImageBuilder;
+    private LcdImage nextImage;
+
+    private RenderPolicy renderPolicy = RenderPolicy.everyFrame();
+    //Number of frames started since the creation of the controller
+    private long frameCount = 0;
+    private long lastDrawnFrame = 0;
+    private boolean drawingFrame = false;
+    //Number of frames completed, never restored from a snapshot
+    private long framesProduced = 0;
 
     private Mode nextMode = Mode.MODE_2;
 
+    //Workspace in which the lines are composed, reused for every line
+    private final LcdLineBuffer line = new LcdLineBuffer(LCD_WIDTH);
+    private final LcdLineBuffer bgLine = new LcdLineBuffer(BG_SIZE);
+    private final LcdLineBuffer windowLine = new LcdLineBuffer(LCD_WIDTH);
+    private final LcdLineBuffer spriteLine = new LcdLineBuffer(LCD_WIDTH);
+    private final LcdLineBuffer foregroundLine = new LcdLineBuffer(LCD_WIDTH);
+    private final LcdLineBuffer backgroundLine = new LcdLineBuffer(LCD_WIDTH);
+    private final int[] intersectingSprites = new int[MAX_SPRITES];
+
     /**
      * An enumeration representing all of the LcdController's registers.
      */
@@ -146,13 +178,25 @@ public class LcdController implements Component, Clocked {
         this.cpu = cpu;
         regs = new RegisterFile<>(Reg.values());
         videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
-        currentImage = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT).build();
+        tileCache = new TileCache(videoRam);
+        currentPixels = new int[LcdImage.intsPerRow(LCD_WIDTH) * LCD_HEIGHT];
+        nextPixels = new int[currentPixels.length];
+        currentImage = new LcdImage(LCD_WIDTH, LCD_HEIGHT, currentPixels);
+        nextImage = new LcdImage(LCD_WIDTH, LCD_HEIGHT, nextPixels);
         nextNonIdleCycle = Long.MAX_VALUE;
         oam = new Ram(AddressMap.OAM_RAM_SIZE);
         copyStatus = BYTES_TO_COPY;
 
     }
 
+    @Override
+    public int[] addressRanges() {
+        return new int[] {
+                AddressMap.VIDEO_RAM_START, AddressMap.VIDEO_RAM_END,
+                AddressMap.OAM_START, AddressMap.OAM_END,
+                AddressMap.REGS_LCDC_START, AddressMap.REGS_LCDC_END };
+    }
+
     @Override
     public void attachTo(Bus bus) {
         this.bus = bus;
@@ -161,20 +205,17 @@ public class LcdController implements Component, Clocked {
 
     @Override
     public void cycle(long cycle) {
-        this.cycle = cycle;
         boolean lcdOn = regs.testBit(Reg.LCDC, LCDCBits.LCD_STATUS);
 
-        ++lcdOnCycle;
-
         assert (nextNonIdleCycle
                 >= cycle) : "Cycle bigger than nextNonIdleCycle";
 
-        //Quick Copy
-        if (copyStatus < BYTES_TO_COPY) {
-            oam.write(copyStatus,
-                    bus.read(Bits.make16(regs.get(Reg.DMA), copyStatus)));
-            copyStatus++;
-        }
+        if (cycle <= lastCycle)
+            return;
+        lastCycle = cycle;
+
+        if (copyStatus < BYTES_TO_COPY)
+            copyOam(cycle);
 
         //Regular Cycle
         if (nextNonIdleCycle == cycle && lcdOn) {
@@ -186,18 +227,46 @@ public class LcdController implements Component, Clocked {
             nextMode = Mode.MODE_2;
             setMode(Mode.MODE_2);
             nextNonIdleCycle = cycle;
-            lcdOnCycle = 0;
+            lcdOnCycle = cycle;
             reallyCycle();
         }
     }
 
+    @Override
+    public long nextEventCycle(long cycle) {
+        long next;
+        if (!regs.testBit(Reg.LCDC, LCDCBits.LCD_STATUS))
+            next = Long.MAX_VALUE;
+        //LCD is turning on
+        else
+            next = nextNonIdleCycle == Long.MAX_VALUE
+                    ? cycle : nextNonIdleCycle;
+
+        //End of the OAM DMA, after which its source may be modified
+        if (copyStatus < BYTES_TO_COPY)
+            next = Math.min(next,
+                    Math.max(cycle, dmaStart + BYTES_TO_COPY - 1));
+        return next;
+    }
+
+    /**
+     * Copies the bytes the OAM DMA transfers up to the given cycle included
+     * @param cycle the current cycle
+     */
+    private void copyOam(long cycle) {
+        int end = (int) Math.min(BYTES_TO_COPY, cycle - dmaStart + 1);
+        int source = Bits.make16(regs.get(Reg.DMA), 0);
+        for (; copyStatus < end; ++copyStatus)
+            oam.write(copyStatus, bus.read(source + copyStatus));
+    }
+
     /**
      * Controls the actions done during the lcdc's different modes
      */
     private void reallyCycle() {
         setMode(nextMode);
         int line = regs.get(Reg.LY);
-        int currentFrame = lcdOnCycle % IMAGE_CYCLES;
+        long currentFrame = (nextNonIdleCycle - lcdOnCycle) % IMAGE_CYCLES;
         if (currentFrame == 0)
             line = 0;
 
@@ -221,8 +290,9 @@ public class LcdController implements Component, Clocked {
                         cpu.requestInterrupt(Cpu.Interrupt.LCD_STAT);
 
                     if (regs.get(Reg.LY) == 0) {
-                        nextImageBuilder = new LcdImage.Builder(LCD_WIDTH,
-                                LCD_HEIGHT);
+                        drawingFrame = renderPolicy.draws(frameCount++);
+                        if (drawingFrame)
+                            Arrays.fill(nextPixels, 0);
                         winY = 0;
                     }
                     nextMode = Mode.MODE_3;
@@ -231,7 +301,8 @@ public class LcdController implements Component, Clocked {
 
             case MODE_3:
                     nextNonIdleCycle += MODE_3_CYCLES;
-                    nextImageBuilder.setLine(line, computeLine(line));
+                    if (drawingFrame)
+                        computeLine(line);
 
                     nextMode = Mode.MODE_0;
 
@@ -248,9 +319,13 @@ public class LcdController implements Component, Clocked {
 
                 nextMode = Mode.MODE_1;
                 setMode(Mode.MODE_1);
+                if (Metrics.ENABLED)
+                    ++framesProduced;
 
-                currentImage = nextImageBuilder.build();
-                nextImageBuilder = null;
+                if (drawingFrame) {
+                    swapImages();
+                    lastDrawnFrame = frameCount;
+                }
 
                 cpu.requestInterrupt(Cpu.Interrupt.VBLANK);
             }
@@ -264,12 +339,74 @@ public class LcdController implements Component, Clocked {
         }
     }
 
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        regs.saveState(buffer);
+        videoRam.saveState(buffer);
+        oam.saveState(buffer);
+        buffer.putLong(nextNonIdleCycle)
+                .putLong(lcdOnCycle)
+                .putLong(lastCycle)
+                .put((byte) winY)
+                .put((byte) copyStatus)
+                .putLong(dmaStart)
+                .put((byte) nextMode.ordinal())
+                .putLong(frameCount)
+                .putLong(lastDrawnFrame)
+                .put((byte) (drawingFrame ? 1 : 0));
+        putInts(buffer, currentPixels);
+        putInts(buffer, nextPixels);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        regs.loadState(buffer);
+        videoRam.loadState(buffer);
+        oam.loadState(buffer);
+        nextNonIdleCycle = buffer.getLong();
+        lcdOnCycle = buffer.getLong();
+        lastCycle = buffer.getLong();
+        winY = Byte.toUnsignedInt(buffer.get());
+        copyStatus = Byte.toUnsignedInt(buffer.get());
+        dmaStart = buffer.getLong();
+        int modeIndex = buffer.get();
+        Preconditions.checkArgument(0 <= modeIndex && modeIndex < Mode.values().length);
+        nextMode = Mode.values()[modeIndex];
+        frameCount = buffer.getLong();
+        lastDrawnFrame = buffer.getLong();
+        drawingFrame = buffer.get() != 0;
+        getInts(buffer, currentPixels);
+        getInts(buffer, nextPixels);
+
+        tileCache.invalidateAll();
+    }
+
+    /**
+     * Writes the given ints at the position of the given buffer, advancing it
+     */
+    private static void putInts(ByteBuffer buffer, int[] ints) {
+        IntBuffer view = buffer.asIntBuffer();
+        view.put(ints);
+        buffer.position(buffer.position() + ints.length * Integer.BYTES);
+    }
+
+    /**
+     * Reads the given ints at the position of the given buffer, advancing it
+     */
+    private static void getInts(ByteBuffer buffer, int[] ints) {
+        IntBuffer view = buffer.asIntBuffer();
+        view.get(ints);
+        buffer.position(buffer.position() + ints.length * Integer.BYTES);
+    }
+
     @Override
     public int read(int address) {
         Preconditions.checkBits16(address);
 
         //Object Attribute Memory
         if (AddressMap.OAM_START <= address && address < AddressMap.OAM_END) {
+            if (copyStatus < BYTES_TO_COPY)
+                copyOam(lastCycle);
             return oam.read(address - AddressMap.OAM_START);
         }
 
@@ -293,6 +430,8 @@ public class LcdController implements Component, Clocked {
 
         //Object Attribute Memory
         if (AddressMap.OAM_START <= address && address < AddressMap.OAM_END) {
+            if (copyStatus < BYTES_TO_COPY)
+                copyOam(lastCycle);
             oam.write(address - AddressMap.OAM_START, data);
         }
 
@@ -300,6 +439,7 @@ public class LcdController implements Component, Clocked {
         if (AddressMap.VIDEO_RAM_START <= address
                 && address < AddressMap.VIDEO_RAM_END) {
             videoRam.write(address - AddressMap.VIDEO_RAM_START, data);
+            tileCache.invalidate(address - AddressMap.VIDEO_RAM_START);
         }
         //LCD registers
         if (AddressMap.REGS_LCDC_START <= address
@@ -308,8 +448,12 @@ public class LcdController implements Component, Clocked {
 
             switch (r) {
             case DMA :
+                if (copyStatus < BYTES_TO_COPY)
+                    copyOam(lastCycle);
                 regs.set(r, data);
                 copyStatus = 0;
+                dmaStart = lastCycle + 1;
+                cpu.lockBusUntil(dmaStart + BYTES_TO_COPY);
                 break;
             case LY:
                 break;
@@ -367,88 +511,124 @@ public class LcdController implements Component, Clocked {
     }
 
     /**
-     * Computes the current image's line at the given lineIndex
+     * @return the number of frames completed since the creation of the
+     * controller, whether they were drawn or not
+     */
+    public long framesProduced() {
+        return framesProduced;
+    }
+
+    /**
+     * Sets the policy deciding which frames are drawn
+     * @param renderPolicy the new policy, applied from the next frame on
+     */
+    public void setRenderPolicy(RenderPolicy renderPolicy) {
+        this.renderPolicy = Objects.requireNonNull(renderPolicy);
+    }
+
+    /**
+     * Draws a whole frame at once, using the current state of the video RAM
+     * and registers
+     */
+    private void drawFrame() {
+        int savedWinY = winY;
+        winY = 0;
+        Arrays.fill(nextPixels, 0);
+        for (int line = 0; line < LCD_HEIGHT; ++line)
+            computeLine(line);
+        swapImages();
+        winY = savedWinY;
+        lastDrawnFrame = frameCount;
+    }
+
+    /**
+     * Makes the image that was drawn the current image, the former current
+     * image's pixels being reused to draw the next one
+     */
+    private void swapImages() {
+        int[] pixels = currentPixels;
+        currentPixels = nextPixels;
+        nextPixels = pixels;
+
+        LcdImage image = currentImage;
+        currentImage = nextImage;
+        nextImage = image;
+    }
+
+    /**
+     * Computes the next image's line at the given lineIndex, and writes it
+     * into the next image's pixels
      *
      * @param lineNumber the given LineIndex
-     * @return the computed line
      */
-    private LcdImageLine computeLine(int lineNumber) {
+    private void computeLine(int lineNumber) {
         Objects.checkIndex(lineNumber, LCD_HEIGHT);
         //--------------------------- Draw BG ----------------------------------
-        LcdImageLine line = new LcdImageLine.Builder(BG_SIZE).build();
+        line.clear();
         int lineIndex = (lineNumber + regs.get(Reg.SCY)) % BG_SIZE;
 
         if (regs.testBit(Reg.LCDC, LCDCBits.BG)) {
-            line = constructLine(false, lineIndex);
-            line = line.extractWrapped(regs.get(Reg.SCX), LCD_WIDTH)
+            constructLine(bgLine, false, lineIndex);
+            line.extractWrapped(bgLine, regs.get(Reg.SCX))
                     .mapColors(regs.get(Reg.BGP));
         }
         //-------------------------- Draw WIN ----------------------------------
         int wX = Math.max(regs.get(Reg.WX) - (WX_CORRECT), 0);
         int wY = regs.get(Reg.WY);
-        LcdImageLine auxLine = new LcdImageLine.Builder(LCD_WIDTH).build();
-
-
-        if (regs.testBit(Reg.LCDC, LCDCBits.WIN)) {
+        boolean drawWindow = regs.testBit(Reg.LCDC, LCDCBits.WIN)
+                && wX < LCD_WIDTH && lineNumber >= wY;
 
-            if (wX < LCD_WIDTH && lineNumber >= wY) {
-                auxLine = constructLine(true, winY).shift(wX)
-                        .mapColors(regs.get(Reg.BGP));
+        if (drawWindow) {
+            constructLine(windowLine, true, winY).shift(wX)
+                    .mapColors(regs.get(Reg.BGP));
 
-                ++winY;
-            }
+            ++winY;
         }
         //----------------------------------------------------------------------
         //---------------------------- Sprites ---------------------------------
-        LcdImageLine foregroundLine = new LcdImageLine.Builder(LCD_WIDTH)
-                .build();
-        LcdImageLine backgroundLine = new LcdImageLine.Builder(LCD_WIDTH)
-                .build();
+        boolean drawSprites = regs.testBit(Reg.LCDC, LCDCBits.OBJ);
 
-        if (regs.testBit(Reg.LCDC, LCDCBits.OBJ)) {
+        if (drawSprites) {
+            foregroundLine.clear();
+            backgroundLine.clear();
 
-            int[] intersectingSprites = spritesIntersectingLine(lineNumber);
+            int count = spritesIntersectingLine(lineNumber);
 
+            for (int i = 0; i < count; i++) {
 
-            for (int i = 0; i < intersectingSprites.length; i++) {
-
+                singleSpriteLine(intersectingSprites[i], lineNumber);
                 if (Bits.test(oam.read(intersectingSprites[i] * SPRITE_BYTES
                         + SPRITE_CHAR_BYTE), SpriteCharBits.BEHIND_BG)) {
-                    backgroundLine = singleSpriteLine(intersectingSprites[i],
-                            lineNumber).below(backgroundLine);
+                    backgroundLine.above(spriteLine);
                 } else {
-                    foregroundLine = singleSpriteLine(intersectingSprites[i],
-                            lineNumber).below(foregroundLine);
+                    foregroundLine.above(spriteLine);
                 }
             }
         }
         //----------------------------------------------------------------------
 
         //Join BG Sprites
-        if (regs.testBit(Reg.LCDC, LCDCBits.OBJ))
-            line = backgroundLine.below(line,
-                    line.opacity().or(backgroundLine.opacity().not()));
+        if (drawSprites)
+            line.behind(backgroundLine);
 
         //Join window
-        if(regs.testBit(Reg.LCDC, LCDCBits.WIN)
-                && wX < LCD_WIDTH && lineNumber >= wY)
-            line = line.join(auxLine, wX);
+        if (drawWindow)
+            line.join(windowLine, wX);
 
         //Join FG Sprites
-        if (regs.testBit(Reg.LCDC, LCDCBits.OBJ))
-            line = line.below(foregroundLine);
+        if (drawSprites)
+            line.below(foregroundLine);
 
-        return line;
+        line.packInto(nextPixels, lineNumber, LCD_WIDTH);
     }
 
     /**
-     * Compute a line with a given sprite in it
+     * Computes a line with a given sprite in it, in spriteLine
      *
      * @param spriteIndex index of the sprite
      * @param lineIndex   index of the line
-     * @return the line containing the sprite
      */
-    private LcdImageLine singleSpriteLine(int spriteIndex, int lineIndex) {
+    private void singleSpriteLine(int spriteIndex, int lineIndex) {
         int x = oam.read(spriteIndex * SPRITE_BYTES + 1) - X_COMPENSATION;
         int y = oam.read(spriteIndex * SPRITE_BYTES) - Y_COMPENSATION;
         int palette = Bits.test(oam.read(spriteIndex * SPRITE_BYTES + SPRITE_CHAR_BYTE),
@@ -468,30 +648,28 @@ public class LcdController implements Component, Clocked {
                 spriteHeight - 1 - (lineIndex - y) :
                 lineIndex - y;
 
-        int regularLsb = read(AddressMap.VIDEO_RAM_START + (Byte.SIZE * 2) *
-                oam.read(2 + spriteIndex * SPRITE_BYTES)
-                + relevantLineInSprite * 2);
-        int regularMsb = read(AddressMap.VIDEO_RAM_START + (Byte.SIZE * 2) *
-                oam.read(2 + spriteIndex * SPRITE_BYTES)
-                + relevantLineInSprite * 2 + 1);
-
-        int spriteLsb = horizontalFlip ? regularLsb : Bits.reverse8(regularLsb);
-        int spriteMsb = horizontalFlip ? regularMsb : Bits.reverse8(regularMsb);
+        //A 16 pixels high sprite continues on the tile following its own
+        int tile = oam.read(2 + spriteIndex * SPRITE_BYTES)
+                + relevantLineInSprite / TILE_SIZE;
+        int row = tileCache.row(tile, relevantLineInSprite % TILE_SIZE,
+                horizontalFlip);
 
-        LcdImageLine.Builder spriteLineBuilder = new LcdImageLine.Builder(
-                LCD_WIDTH);
-        spriteLineBuilder.setBytes(0, spriteMsb, spriteLsb);
-        return spriteLineBuilder.build().shift(x).mapColors(palette);
+        spriteLine.clear()
+                .setBytes(0, row >>> Byte.SIZE, Bits.clip(Byte.SIZE, row))
+                .shift(x).mapColors(palette);
     }
 
     /**
      * Constructs the line (either background or window) at the given lineIndex
      *
+     * @param target    the line in which to construct the line, whose size
+     *                  is the one of the window or of the background
      * @param window    selects whether to compute a window line or a bg line
      * @param lineIndex the index at which to compute the line
      * @return the constructed version of the line.
      */
-    private LcdImageLine constructLine(boolean window, int lineIndex) {
+    private LcdLineBuffer constructLine(LcdLineBuffer target, boolean window,
+            int lineIndex) {
 
         int bgArea = AddressMap.BG_DISPLAY_DATA[
                 regs.testBit(Reg.LCDC, LCDCBits.BG_AREA) ? 1 : 0];
@@ -500,40 +678,38 @@ public class LcdController implements Component, Clocked {
         int tileArea = AddressMap.TILE_SOURCE[
                 regs.testBit(Reg.LCDC, LCDCBits.TILE_SOURCE) ? 1 : 0];
 
-        int length = window ? LCD_WIDTH : BG_SIZE;
+        int length = target.size();
         int area = window ? winArea : bgArea;
 
         int tileLineIndex = lineIndex / TILE_SIZE;
         int tileLine = lineIndex % TILE_SIZE;
 
-        LcdImageLine.Builder construct = new LcdImageLine.Builder(length);
+        int mapStart = tileLineIndex * NUMBER_OF_TILES + area
+                - AddressMap.VIDEO_RAM_START;
+        int firstTile = (tileArea - AddressMap.VIDEO_RAM_START) / TILE_LENGTH;
 
         for (int i = 0; i < (length / Byte.SIZE); ++i) {
-            int tileIndex = read(tileLineIndex * NUMBER_OF_TILES + area + i);
+            int tileIndex = videoRam.read(mapStart + i);
             tileIndex = (regs.testBit(Reg.LCDC, LCDCBits.TILE_SOURCE)) ? tileIndex :
                     (tileIndex + TILE_SOURCE_DIFF) % TILE_INDEX_BOUND;
 
-            int byteAddress = tileArea + tileIndex * TILE_LENGTH + tileLine * 2;
+            int row = tileCache.row(firstTile + tileIndex, tileLine, false);
 
-            int tileLsb = read(byteAddress);
-            int tileMsb = read(byteAddress + 1);
-
-            construct = construct.setBytes(i, Bits.reverse8(tileMsb),
-                    Bits.reverse8(tileLsb));
+            target.setBytes(i, row >>> Byte.SIZE, Bits.clip(Byte.SIZE, row));
         }
 
-        return construct.build();
+        return target;
     }
 
     /**
-     * Calculates which sprites are found on each line
+     * Calculates which sprites are found on each line, and stores their
+     * indexes in intersectingSprites
      *
      * @param line the line on which we want to find the sprites
-     * @return an array containing the indexes of each sprite in the correct
-     * order, so ordered by x and index in memory.
+     * @return the number of sprites found, whose indexes are stored in the
+     * correct order, so ordered by x and index in memory.
      */
-    private int[] spritesIntersectingLine(int line) {
-        int[] sprites = new int[MAX_SPRITES];
+    private int spritesIntersectingLine(int line) {
         int count = 0;
 
         /* Each element contains the following information:
@@ -548,26 +724,59 @@ public class LcdController implements Component, Clocked {
             int x = oam.read(i * SPRITE_BYTES + 1);
 
             if (line >= y && line < y + size) {
-                sprites[count] = Bits.make16(x, i);
+                intersectingSprites[count] = Bits.make16(x, i);
                 ++count;
             }
         }
-        Arrays.sort(sprites, 0, count);
-        int[] orderedIndexes = new int[count];
+        Arrays.sort(intersectingSprites, 0, count);
 
         for (int i = 0; i < count; ++i)
-            orderedIndexes[i] = Bits.clip(Byte.SIZE, sprites[i]);
+            intersectingSprites[i] = Bits.clip(Byte.SIZE,
+                    intersectingSprites[i]);
 
-        return orderedIndexes;
+        return count;
     }
 
     /**
-     * Returns the current Image that is displayed on the screen
+     * Returns a copy of the current image displayed on the screen, which
+     * never changes afterwards.
+     *
+     * When frames are drawn on demand, the image is drawn by this method
+     * if a frame started since the last one was drawn and the screen is on.
      *
-     * @return a blank image if currentImage is null
+     * @return a blank image if no image was drawn yet
      * else returns the current Image.
      */
     public LcdImage currentImage() {
+        drawIfRequested();
+        return new LcdImage(LCD_WIDTH, LCD_HEIGHT, currentPixels.clone());
+    }
+
+    /**
+     * Returns the current image displayed on the screen without copying
+     * it, for callers converting every frame at once, like the GUI.
+     * The returned image is a view of the controller's front buffer: as
+     * the frames are double-buffered, its pixels are overwritten while the
+     * image after the next one is drawn, so it must be used before the
+     * controller is cycled again.
+     *
+     * When frames are drawn on demand, the image is drawn by this method
+     * if a frame started since the last one was drawn and the screen is on.
+     *
+     * @return a view of the current image, blank if no image was drawn yet
+     */
+    public LcdImage liveImage() {
+        drawIfRequested();
         return currentImage;
     }
+
+    /**
+     * Draws the current frame if frames are drawn on demand, a frame
+     * started since the last one was drawn and the screen is on
+     */
+    private void drawIfRequested() {
+        if (renderPolicy.isOnDemand() && frameCount != lastDrawnFrame
+                && regs.testBit(Reg.LCDC, LCDCBits.LCD_STATUS))
+            drawFrame();
+    }
 }
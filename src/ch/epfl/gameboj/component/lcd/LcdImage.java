@@ -2,20 +2,26 @@ package ch.epfl.gameboj.component.lcd;
 
 import ch.epfl.gameboj.Preconditions;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
 /**
  * Class simulating an entire image drawn by the LcdController
  *
+ * The image's pixels are packed in an int array, 16 pixels of 2 bits per
+ * int, row after row.
+ *
  * @author Andrew Dobis (Sciper: 272002)
  */
 public final class LcdImage {
+    private static final int PIXEL_BITS = 2;
+    private static final int PIXEL_MASK = 0b11;
+    static final int PIXELS_PER_INT = Integer.SIZE / PIXEL_BITS;
+
     private final int width;
     private final int height;
-    private final List<LcdImageLine> lines;
+    private final int[] pixels;
 
     /**
      * Constructs an LcdImage
@@ -24,12 +30,24 @@ public final class LcdImage {
      * @param lines a list containing all of the LcdImage's lines.
      */
     public LcdImage(int width, int height, List<LcdImageLine> lines) {
+        this(width, height, packLines(width, height, lines));
+    }
+
+    /**
+     * Constructs an LcdImage from its packed pixels, which are not copied
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param pixels the packed pixels of the image
+     */
+    LcdImage(int width, int height, int[] pixels) {
         Preconditions.checkArgument(width > 0);
         Preconditions.checkArgument(height > 0);
+        Preconditions.checkArgument(
+                pixels.length == intsPerRow(width) * height);
 
         this.width = width;
         this.height = height;
-        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        this.pixels = pixels;
     }
 
     /**
@@ -58,16 +76,37 @@ public final class LcdImage {
         Objects.checkIndex(x, width);
         Objects.checkIndex(y, height);
 
-        LcdImageLine line = lines.get(y);
+        int packed = pixels[y * intsPerRow(width) + x / PIXELS_PER_INT];
+        return (packed >>> (x % PIXELS_PER_INT) * PIXEL_BITS) & PIXEL_MASK;
+    }
 
-        int msb = line.msb().testBit(x) ? 0b10 : 0;
-        int lsb = line.lsb().testBit(x) ? 0b01 : 0;
-        return msb | lsb;
+    /**
+     * Maps every pixel of the image to the given value of its color, writing
+     * the results row after row into the given array. This allows converting
+     * a whole image at once, for example into ARGB values.
+     * @param colors the values of the 4 colors
+     * @param target the array in which the values are written, of size at
+     *               least width * height
+     */
+    public void mapPixels(int[] colors, int[] target) {
+        Preconditions.checkArgument(colors.length == PIXEL_MASK + 1
+                && target.length >= width * height);
+
+        int intsPerRow = intsPerRow(width);
+        for (int y = 0; y < height; ++y) {
+            int row = y * intsPerRow;
+            int offset = y * width;
+            for (int x = 0; x < width; ++x) {
+                int packed = pixels[row + x / PIXELS_PER_INT];
+                target[offset + x] = colors[(packed
+                        >>> (x % PIXELS_PER_INT) * PIXEL_BITS) & PIXEL_MASK];
+            }
+        }
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(width, height, lines);
+        return Objects.hash(width, height, Arrays.hashCode(pixels));
     }
 
     @Override
@@ -77,17 +116,40 @@ public final class LcdImage {
 
             return (width == (thatLcd.width) &&
                     height == thatLcd.height &&
-                    lines.equals(thatLcd.lines));
+                    Arrays.equals(pixels, thatLcd.pixels));
         }
         return false;
     }
 
+    /**
+     * Returns the number of ints containing a row of the given width
+     * @param width the width of the image
+     * @return the number of ints per row
+     */
+    static int intsPerRow(int width) {
+        return (width + PIXELS_PER_INT - 1) / PIXELS_PER_INT;
+    }
+
+    /**
+     * Packs the given lines into a new array
+     */
+    private static int[] packLines(int width, int height,
+            List<LcdImageLine> lines) {
+        Preconditions.checkArgument(width > 0);
+        Preconditions.checkArgument(height > 0);
+
+        int[] pixels = new int[intsPerRow(width) * height];
+        for (int y = 0; y < Math.min(height, lines.size()); ++y)
+            new LcdLineBuffer(lines.get(y)).packInto(pixels, y, width);
+        return pixels;
+    }
+
     /**
      * A builder allowing to construct an LcdImage in multiple steps.
      */
     public final static class Builder {
 
-        private final List<LcdImageLine> build;
+        private final int[] build;
         private final int buildH;
         private final int buildW;
 
@@ -100,13 +162,9 @@ public final class LcdImage {
             Preconditions.checkArgument(width > 0);
             Preconditions.checkArgument(height > 0);
 
-            build = new ArrayList<>();
+            build = new int[intsPerRow(width) * height];
             buildH = height;
             buildW = width;
-            LcdImageLine line = new LcdImageLine.Builder(width).build();
-            for (int i = 0; i < height; i++){
-                build.add(i, line);
-            }
         }
 
         /**
@@ -116,7 +174,8 @@ public final class LcdImage {
          * @return the modified version of the builder
          */
         public Builder setLine(int index, LcdImageLine line) {
-            build.set(index, line);
+            Objects.checkIndex(index, buildH);
+            new LcdLineBuffer(line).packInto(build, index, buildW);
             return this;
         }
 
@@ -125,7 +184,8 @@ public final class LcdImage {
          * @return a final version of the Image.
          */
         public LcdImage build() {
-            return new LcdImage(buildW, buildH, build);
+            return new LcdImage(buildW, buildH,
+                    Arrays.copyOf(build, build.length));
         }
     }
 
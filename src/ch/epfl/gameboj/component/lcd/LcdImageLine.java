@@ -2,10 +2,8 @@ package ch.epfl.gameboj.component.lcd;
 
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.bits.BitVector;
-import ch.epfl.gameboj.bits.Bits;
 
 import java.util.Objects;
-import java.util.function.BinaryOperator;
 
 /**
  * Class simulating a line drawn by the LcdController
@@ -14,7 +12,6 @@ import java.util.function.BinaryOperator;
  */
 public final class LcdImageLine {
     private static final int NORMAL_PALETTE = 0b11_10_01_00;
-    private static final int NUMBER_OF_COLORS = 4;
 
     private final BitVector msb, lsb, opacity;
 
@@ -75,7 +72,7 @@ public final class LcdImageLine {
     public LcdImageLine shift(int shift){
 
         return shift == 0 ? this :
-                new LcdImageLine(msb.shift(shift), lsb.shift(shift), opacity.shift(shift));
+                new LcdLineBuffer(this).shift(shift).toLine();
     }
 
     /**
@@ -86,9 +83,8 @@ public final class LcdImageLine {
      */
     public LcdImageLine extractWrapped(int startIndex, int size) {
 
-        return new LcdImageLine(msb.extractWrapped(startIndex, size),
-                                lsb.extractWrapped(startIndex, size),
-                                opacity.extractWrapped(startIndex, size));
+        return new LcdLineBuffer(size)
+                .extractWrapped(new LcdLineBuffer(this), startIndex).toLine();
 
     }
 
@@ -106,38 +102,7 @@ public final class LcdImageLine {
             return this;
         }
 
-        BitVector newMSB = new BitVector(this.size());
-        BitVector newLSB = new BitVector(this.size());
-
-        BitVector mask = this.lsb().not().and(this.msb().not());
-
-        //We iterate on the colors, if we want to set the bits corresponding to
-        //some color to 1 according to the corresponding bit in the
-        //palette, we do a logical disjunction with the mask
-        for (int i = 0; i < NUMBER_OF_COLORS; ++i) {
-
-            switch (i) {
-            case 0: {
-                //color 0, MSB 0 and LSB 0
-            } break;
-            case 1:{
-                //color 1, MSB 0 and LSB 1
-                mask = this.lsb().and(this.msb().not());
-            } break;
-            case 2: {
-                //color 2, MSB 1 and LSB 0
-                mask = this.msb().and(this.lsb().not());
-            } break;
-            case 3: {
-                //color 3, MSB 1 and LSB 1
-                mask = this.msb().and(this.lsb());
-            } break;
-            }
-            newLSB = Bits.test(palette, i * 2) ? newLSB.or(mask) : newLSB;
-            newMSB = Bits.test(palette, i * 2 + 1) ? newMSB.or(mask) : newMSB;
-
-        }
-        return new LcdImageLine(newMSB, newLSB, this.opacity());
+        return new LcdLineBuffer(this).mapColors(palette).toLine();
 
     }
 
@@ -150,14 +115,12 @@ public final class LcdImageLine {
      */
     public LcdImageLine below(LcdImageLine above, BitVector opacity){
 
-        Preconditions.checkArgument(above.size() == this.size());
-        BitVector aboveMSB = above.msb();
-        BitVector aboveLSB = above.lsb();
-        //basically a multiplexer where opacity is the selector and above and
-        //this are the inputs
-        return new LcdImageLine(aboveMSB.and(opacity).or(this.msb().and(opacity.not())),
-                aboveLSB.and(opacity).or(this.lsb().and(opacity.not())),
-                this.opacity().or(opacity));
+        Preconditions.checkArgument(above.size() == this.size()
+                && opacity.size() == this.size());
+
+        return new LcdImageLine(BitVector.select(opacity, above.msb, msb),
+                BitVector.select(opacity, above.lsb, lsb),
+                this.opacity.or(opacity));
 
     }
 
@@ -185,17 +148,10 @@ public final class LcdImageLine {
             throw new IndexOutOfBoundsException();
         }
 
-        BitVector notMask = new BitVector(size(), true).shift(index);
-        BitVector mask = notMask.not();
-
-        BinaryOperator<BitVector> joinVector = (x, y) ->
-                x.and(mask).or(y.and(notMask));
-
-        return new LcdImageLine(
-                joinVector.apply(this.msb(), that.msb()),
-                joinVector.apply(this.lsb(), that.lsb()),
-                joinVector.apply(this.opacity(), that.opacity())
-        );
+        BitVector thatMask = new BitVector(size(), true).shift(index);
+        return new LcdImageLine(BitVector.select(thatMask, that.msb, msb),
+                BitVector.select(thatMask, that.lsb, lsb),
+                BitVector.select(thatMask, that.opacity, opacity));
     }
 
     @Override
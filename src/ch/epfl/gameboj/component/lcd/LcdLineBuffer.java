@@ -0,0 +1,318 @@
+package ch.epfl.gameboj.component.lcd;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.BitVector;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Mutable line used as a workspace by the LcdController.
+ * Contrary to LcdImageLine, every operation modifies the line in place, so
+ * that a scanline can be composed without allocating any object.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+final class LcdLineBuffer {
+    private static final int WORD_SIZE = Integer.SIZE;
+    private static final int BYTES_PER_WORD = Integer.BYTES;
+    private static final int NORMAL_PALETTE = 0b11_10_01_00;
+    private static final LineCompositor COMPOSITOR =
+            LineCompositor.preferred();
+
+    private final int[] msb, lsb, opacity;
+    private final int[] scratch;
+
+    /**
+     * Constructs a transparent line of color 0 of the given size
+     * @param size the size of the line, a multiple of 32
+     */
+    LcdLineBuffer(int size) {
+        Preconditions.checkArgument(size % WORD_SIZE == 0 && size >= 0);
+
+        msb = new int[size / WORD_SIZE];
+        lsb = new int[msb.length];
+        opacity = new int[msb.length];
+        scratch = new int[msb.length];
+    }
+
+    /**
+     * Constructs a line containing a copy of the given line
+     * @param line the line to copy
+     */
+    LcdLineBuffer(LcdImageLine line) {
+        this(line.size());
+        System.arraycopy(line.msb().getData(), 0, msb, 0, msb.length);
+        System.arraycopy(line.lsb().getData(), 0, lsb, 0, lsb.length);
+        System.arraycopy(line.opacity().getData(), 0, opacity, 0,
+                opacity.length);
+    }
+
+    /**
+     * @return the size of the line
+     */
+    int size() {
+        return msb.length * WORD_SIZE;
+    }
+
+    /**
+     * Makes the whole line transparent and of color 0
+     * @return this line
+     */
+    LcdLineBuffer clear() {
+        Arrays.fill(msb, 0);
+        Arrays.fill(lsb, 0);
+        Arrays.fill(opacity, 0);
+        return this;
+    }
+
+    /**
+     * Sets the given msb and lsb bytes at the given byte index, the pixels
+     * of these bytes being opaque iff their color isn't 0
+     * @param index the index of the byte
+     * @param msbByte the msbs of the byte's pixels
+     * @param lsbByte the lsbs of the byte's pixels
+     * @return this line
+     */
+    LcdLineBuffer setBytes(int index, int msbByte, int lsbByte) {
+        int word = index / BYTES_PER_WORD;
+        int shift = (index % BYTES_PER_WORD) * Byte.SIZE;
+        int mask = ~(0xFF << shift);
+
+        msb[word] = (msb[word] & mask) | (msbByte << shift);
+        lsb[word] = (lsb[word] & mask) | (lsbByte << shift);
+        opacity[word] = (opacity[word] & mask)
+                | ((msbByte | lsbByte) << shift);
+        return this;
+    }
+
+    /**
+     * Replaces this line by a wrapped extraction of the given line
+     * @param source the line to extract from, which must not be this line
+     * @param startIndex where to start the extraction
+     * @return this line
+     */
+    LcdLineBuffer extractWrapped(LcdLineBuffer source, int startIndex) {
+        Preconditions.checkArgument(source != this);
+
+        for (int i = 0; i < msb.length; ++i) {
+            int index = startIndex + i * WORD_SIZE;
+            msb[i] = extractWord(source.msb, index, true);
+            lsb[i] = extractWord(source.lsb, index, true);
+            opacity[i] = extractWord(source.opacity, index, true);
+        }
+        return this;
+    }
+
+    /**
+     * Shifts the line, towards the left if the distance is positive and
+     * towards the right otherwise
+     * @param shift the shift distance
+     * @return this line
+     */
+    LcdLineBuffer shift(int shift) {
+        if (shift != 0) {
+            shift(msb, shift);
+            shift(lsb, shift);
+            shift(opacity, shift);
+        }
+        return this;
+    }
+
+    /**
+     * Transforms the colors of the line according to the given palette
+     * @param palette byte encoding the transformation
+     * @return this line
+     */
+    LcdLineBuffer mapColors(int palette) {
+        Preconditions.checkBits8(palette);
+
+        if (palette != NORMAL_PALETTE)
+            COMPOSITOR.mapColors(this, palette);
+        return this;
+    }
+
+    /**
+     * Puts the given line above this one, using the given line's opacity
+     * @param above the line to put above this one
+     * @return this line
+     */
+    LcdLineBuffer below(LcdLineBuffer above) {
+        return below(above, above.opacity);
+    }
+
+    /**
+     * Puts the given line above this one, using the given opacity
+     * @param above the line to put above this one
+     * @param opacityWords the opacity used to combine the lines
+     * @return this line
+     */
+    LcdLineBuffer below(LcdLineBuffer above, int[] opacityWords) {
+        Preconditions.checkArgument(above.size() == size()
+                && opacityWords.length == msb.length);
+
+        COMPOSITOR.below(this, above, opacityWords);
+        return this;
+    }
+
+    /**
+     * Puts the given line below this one, using this line's opacity
+     * @param below the line to put below this one
+     * @return this line
+     */
+    LcdLineBuffer above(LcdLineBuffer below) {
+        Preconditions.checkArgument(below.size() == size());
+
+        COMPOSITOR.above(this, below);
+        return this;
+    }
+
+    /**
+     * Puts the given line behind this one: its opaque pixels are only
+     * visible where this line is transparent. The resulting line is entirely
+     * opaque.
+     * @param behind the line to put behind this one
+     * @return this line
+     */
+    LcdLineBuffer behind(LcdLineBuffer behind) {
+        Preconditions.checkArgument(behind.size() == size());
+
+        COMPOSITOR.behind(this, behind);
+        return this;
+    }
+
+    /**
+     * Joins this line with the given one, the pixels starting from the given
+     * index being taken from the given line
+     * @param that the line to join this line with
+     * @param index the index from which the given line is used
+     * @return this line
+     */
+    LcdLineBuffer join(LcdLineBuffer that, int index) {
+        Preconditions.checkArgument(that.size() == size());
+        if (index < 0 || index > size())
+            throw new IndexOutOfBoundsException();
+
+        COMPOSITOR.join(this, that, index);
+        return this;
+    }
+
+    /**
+     * @return the msbs of the line, which must only be modified by a
+     * LineCompositor
+     */
+    int[] msbWords() {
+        return msb;
+    }
+
+    /**
+     * @return the lsbs of the line, which must only be modified by a
+     * LineCompositor
+     */
+    int[] lsbWords() {
+        return lsb;
+    }
+
+    /**
+     * @return the opacity of the line, which must only be modified by a
+     * LineCompositor
+     */
+    int[] opacityWords() {
+        return opacity;
+    }
+
+    /**
+     * Writes the colors of the first pixels of this line into the given row
+     * of packed pixels, as stored by LcdImage
+     * @param pixels the packed pixels of an image
+     * @param row the index of the row to write
+     * @param width the width of the image
+     */
+    void packInto(int[] pixels, int row, int width) {
+        int intsPerRow = LcdImage.intsPerRow(width);
+        int offset = row * intsPerRow;
+        Objects.checkFromIndexSize(offset, intsPerRow, pixels.length);
+
+        for (int i = 0; i < intsPerRow; ++i) {
+            int word = i / 2;
+            int half = (i % 2) * LcdImage.PIXELS_PER_INT;
+            int packed = 0;
+
+            if (word < msb.length) {
+                packed = spread(msb[word] >>> half) << 1
+                        | spread(lsb[word] >>> half);
+            }
+            pixels[offset + i] = packed;
+        }
+
+        int remainder = width % LcdImage.PIXELS_PER_INT;
+        if (remainder != 0)
+            pixels[offset + intsPerRow - 1] &= (1 << remainder * 2) - 1;
+    }
+
+    /**
+     * Builds an immutable copy of this line
+     * @return an LcdImageLine equal to this line
+     */
+    LcdImageLine toLine() {
+        return new LcdImageLine(toBitVector(msb), toBitVector(lsb),
+                toBitVector(opacity));
+    }
+
+    /**
+     * Builds a BitVector containing the given words
+     */
+    private static BitVector toBitVector(int[] words) {
+        BitVector.Builder builder = new BitVector.Builder(
+                words.length * WORD_SIZE);
+        for (int i = 0; i < words.length; ++i)
+            builder.setInt(i, words[i]);
+        return builder.build();
+    }
+
+    /**
+     * Spreads the 16 lsbs of the given value over the even bits of an int
+     */
+    private static int spread(int v) {
+        v &= 0xFFFF;
+        v = (v | v << 8) & 0x00FF_00FF;
+        v = (v | v << 4) & 0x0F0F_0F0F;
+        v = (v | v << 2) & 0x3333_3333;
+        return (v | v << 1) & 0x5555_5555;
+    }
+
+    /**
+     * Shifts the given words in place, using the scratch array
+     */
+    private void shift(int[] words, int shift) {
+        for (int i = 0; i < words.length; ++i)
+            scratch[i] = extractWord(words, i * WORD_SIZE - shift, false);
+        System.arraycopy(scratch, 0, words, 0, words.length);
+    }
+
+    /**
+     * Extracts the 32 bits starting at the given index from the wrapped or
+     * zero extension of the given words
+     */
+    private static int extractWord(int[] words, int index, boolean wrapped) {
+        int word = Math.floorDiv(index, WORD_SIZE);
+        int start = Math.floorMod(index, WORD_SIZE);
+
+        int low = wordAt(words, word, wrapped);
+        if (start == 0)
+            return low;
+        return (low >>> start)
+                | (wordAt(words, word + 1, wrapped) << (WORD_SIZE - start));
+    }
+
+    /**
+     * Returns the word at the given index of the wrapped or zero extension of
+     * the given words
+     */
+    private static int wordAt(int[] words, int index, boolean wrapped) {
+        if (wrapped)
+            return words[Math.floorMod(index, words.length)];
+        return index >= 0 && index < words.length ? words[index] : 0;
+    }
+}
@@ -0,0 +1,101 @@
+package ch.epfl.gameboj.component.lcd;
+
+/**
+ * Backend performing the operations of LcdLineBuffer which combine whole
+ * lines word by word.
+ *
+ * The default backend is scalar. When the JVM is run with the incubating
+ * Vector API (--add-modules jdk.incubator.vector) and the VectorCompositor
+ * is on the class path, it is used instead. The system property
+ * gameboj.compositor forces a backend: scalar or vector.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+interface LineCompositor {
+    String PROPERTY = "gameboj.compositor";
+    String SCALAR = "scalar";
+    String VECTOR = "vector";
+    String VECTOR_MODULE = "jdk.incubator.vector";
+    String VECTOR_CLASS = "ch.epfl.gameboj.component.lcd.VectorCompositor";
+
+    /**
+     * Puts the given line above the other one, using the given opacity
+     * @param line the line modified
+     * @param above the line to put above it
+     * @param opacity the opacity used to combine the lines
+     */
+    void below(LcdLineBuffer line, LcdLineBuffer above, int[] opacity);
+
+    /**
+     * Puts the given line below the other one, using its opacity
+     * @param line the line modified
+     * @param below the line to put below it
+     */
+    void above(LcdLineBuffer line, LcdLineBuffer below);
+
+    /**
+     * Puts the given line behind the other one, the result being opaque
+     * @param line the line modified
+     * @param behind the line to put behind it
+     */
+    void behind(LcdLineBuffer line, LcdLineBuffer behind);
+
+    /**
+     * Replaces the pixels of the line starting from the given index by the
+     * ones of the other line
+     * @param line the line modified
+     * @param that the line whose pixels are used from the index
+     * @param index the index from which the other line is used, between 0
+     *              and the size of the lines
+     */
+    void join(LcdLineBuffer line, LcdLineBuffer that, int index);
+
+    /**
+     * Transforms the colors of the line according to the given palette
+     * @param line the line modified
+     * @param palette byte encoding the transformation
+     */
+    void mapColors(LcdLineBuffer line, int palette);
+
+    /**
+     * Returns the scalar backend
+     * @return the scalar backend
+     */
+    static LineCompositor scalar() {
+        return ScalarCompositor.INSTANCE;
+    }
+
+    /**
+     * Returns the backend to use, chosen as described above
+     * @return the backend to use
+     * @throws IllegalStateException if the vector backend is forced but
+     * isn't available
+     */
+    static LineCompositor preferred() {
+        String forced = System.getProperty(PROPERTY, "");
+        if (forced.equals(SCALAR))
+            return scalar();
+
+        LineCompositor vector = vector();
+        if (vector == null && forced.equals(VECTOR))
+            throw new IllegalStateException(
+                    "The vector compositor isn't available");
+        return vector == null ? scalar() : vector;
+    }
+
+    /**
+     * Returns the vector backend, or null if it isn't available
+     */
+    private static LineCompositor vector() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty())
+            return null;
+
+        try {
+            return (LineCompositor) Class.forName(VECTOR_CLASS)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
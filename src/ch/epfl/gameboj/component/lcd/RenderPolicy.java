@@ -0,0 +1,72 @@
+package ch.epfl.gameboj.component.lcd;
+
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * Policy deciding which frames the LcdController actually draws.
+ * Skipped frames aren't drawn at all, but the timing of the LCD and its
+ * interrupts stay the same, so the emulated game behaves identically.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+public final class RenderPolicy {
+    private static final RenderPolicy EVERY_FRAME = new RenderPolicy(1);
+    private static final RenderPolicy ON_DEMAND = new RenderPolicy(0);
+
+    private final int period;
+
+    /**
+     * Constructs a policy drawing one frame every period frames, or none if
+     * period is 0
+     * @param period the number of frames between two drawn frames
+     */
+    private RenderPolicy(int period) {
+        this.period = period;
+    }
+
+    /**
+     * Returns the policy drawing every frame, which is the default one
+     * @return the policy drawing every frame
+     */
+    public static RenderPolicy everyFrame() {
+        return EVERY_FRAME;
+    }
+
+    /**
+     * Returns a policy only drawing one frame out of n
+     * @param n the number of frames between two drawn frames
+     * @return the policy drawing every nth frame
+     * @throws IllegalArgumentException if n isn't strictly positive
+     */
+    public static RenderPolicy everyNthFrame(int n) {
+        Preconditions.checkArgument(n > 0);
+        return n == 1 ? EVERY_FRAME : new RenderPolicy(n);
+    }
+
+    /**
+     * Returns the policy never drawing frames while the LCD runs, the image
+     * being drawn at once when it is requested. Effects obtained by changing
+     * the LCD's registers during a frame are therefore not visible.
+     * @return the policy drawing frames on demand
+     */
+    public static RenderPolicy onDemand() {
+        return ON_DEMAND;
+    }
+
+    /**
+     * @return true iff the frames are only drawn when requested
+     */
+    boolean isOnDemand() {
+        return period == 0;
+    }
+
+    /**
+     * Determines whether the frame of the given index must be drawn
+     * @param frame the index of the frame
+     * @return true iff the frame must be drawn while the LCD runs
+     */
+    boolean draws(long frame) {
+        return period != 0 && frame % period == 0;
+    }
+}
@@ -0,0 +1,124 @@
+package ch.epfl.gameboj.component.lcd;
+
+import ch.epfl.gameboj.bits.Bits;
+
+/**
+ * Backend combining lines one 32bit word at a time.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+final class ScalarCompositor implements LineCompositor {
+    static final ScalarCompositor INSTANCE = new ScalarCompositor();
+
+    private static final int WORD_SIZE = Integer.SIZE;
+    private static final int NUMBER_OF_COLORS = 4;
+
+    private ScalarCompositor() {}
+
+    @Override
+    public void below(LcdLineBuffer line, LcdLineBuffer above,
+            int[] opacity) {
+        below(line, above, opacity, 0);
+    }
+
+    @Override
+    public void above(LcdLineBuffer line, LcdLineBuffer below) {
+        above(line, below, 0);
+    }
+
+    @Override
+    public void behind(LcdLineBuffer line, LcdLineBuffer behind) {
+        behind(line, behind, 0);
+    }
+
+    @Override
+    public void join(LcdLineBuffer line, LcdLineBuffer that, int index) {
+        join(line, that, index, 0);
+    }
+
+    @Override
+    public void mapColors(LcdLineBuffer line, int palette) {
+        mapColors(line, palette, 0);
+    }
+
+    //The following operations are done from the given word to the end of
+    //the line, so that the vector backend can use them for the words that
+    //don't fill a whole vector
+
+    static void below(LcdLineBuffer line, LcdLineBuffer above,
+            int[] opacity, int from) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+        int[] lineOpacity = line.opacityWords();
+
+        for (int i = from; i < msb.length; ++i) {
+            int o = opacity[i];
+            msb[i] = (above.msbWords()[i] & o) | (msb[i] & ~o);
+            lsb[i] = (above.lsbWords()[i] & o) | (lsb[i] & ~o);
+            lineOpacity[i] |= o;
+        }
+    }
+
+    static void above(LcdLineBuffer line, LcdLineBuffer below, int from) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+        int[] opacity = line.opacityWords();
+
+        for (int i = from; i < msb.length; ++i) {
+            int o = opacity[i];
+            msb[i] = (msb[i] & o) | (below.msbWords()[i] & ~o);
+            lsb[i] = (lsb[i] & o) | (below.lsbWords()[i] & ~o);
+            opacity[i] = o | below.opacityWords()[i];
+        }
+    }
+
+    static void behind(LcdLineBuffer line, LcdLineBuffer behind, int from) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+        int[] opacity = line.opacityWords();
+
+        for (int i = from; i < msb.length; ++i) {
+            int o = opacity[i] | ~behind.opacityWords()[i];
+            msb[i] = (msb[i] & o) | (behind.msbWords()[i] & ~o);
+            lsb[i] = (lsb[i] & o) | (behind.lsbWords()[i] & ~o);
+            opacity[i] = behind.opacityWords()[i] | o;
+        }
+    }
+
+    static void join(LcdLineBuffer line, LcdLineBuffer that, int index,
+            int from) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+        int[] opacity = line.opacityWords();
+
+        for (int i = from; i < msb.length; ++i) {
+            int bit = index - i * WORD_SIZE;
+            int thatMask = bit <= 0 ? -1 : bit >= WORD_SIZE ? 0 : -1 << bit;
+
+            msb[i] = (msb[i] & ~thatMask) | (that.msbWords()[i] & thatMask);
+            lsb[i] = (lsb[i] & ~thatMask) | (that.lsbWords()[i] & thatMask);
+            opacity[i] = (opacity[i] & ~thatMask)
+                    | (that.opacityWords()[i] & thatMask);
+        }
+    }
+
+    static void mapColors(LcdLineBuffer line, int palette, int from) {
+        int[] msb = line.msbWords(), lsb = line.lsbWords();
+
+        for (int i = from; i < msb.length; ++i) {
+            int m = msb[i];
+            int l = lsb[i];
+            int newMsb = 0;
+            int newLsb = 0;
+
+            for (int color = 0; color < NUMBER_OF_COLORS; ++color) {
+                int mask = (Bits.test(color, 1) ? m : ~m)
+                        & (Bits.test(color, 0) ? l : ~l);
+
+                if (Bits.test(palette, color * 2))
+                    newLsb |= mask;
+                if (Bits.test(palette, color * 2 + 1))
+                    newMsb |= mask;
+            }
+            msb[i] = newMsb;
+            lsb[i] = newLsb;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ch.epfl.gameboj.component.lcd;
+
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.memory.Ram;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Cache containing the rows of every tile of the video RAM, already decoded
+ * in the order in which their pixels are drawn.
+ * A tile is only decoded again when one of its bytes was written since it
+ * was last decoded.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+final class TileCache {
+    static final int NUMBER_OF_TILES = 384;
+    static final int TILE_SIZE = 8;
+    static final int TILE_LENGTH = 16;
+
+    private final Ram videoRam;
+
+    //Rows in the form msb << 8 | lsb, the leftmost pixel being at bit 0
+    private final int[] rows;
+    //Rows flipped horizontally, i.e. the bytes as stored in the video RAM
+    private final int[] flippedRows;
+    //Bit i of dirty[i / 64] is 1 iff tile i must be decoded again
+    private final long[] dirty;
+
+    /**
+     * Constructs a cache over the tiles of the given video RAM
+     * @param videoRam the video RAM, whose index 0 is the start of tile 0
+     */
+    TileCache(Ram videoRam) {
+        this.videoRam = videoRam;
+        rows = new int[NUMBER_OF_TILES * TILE_SIZE];
+        flippedRows = new int[rows.length];
+        dirty = new long[(NUMBER_OF_TILES + Long.SIZE - 1) / Long.SIZE];
+        invalidateAll();
+    }
+
+    /**
+     * Marks the tile containing the given video RAM index as modified
+     * @param index the index in the video RAM that was written
+     */
+    void invalidate(int index) {
+        int tile = index / TILE_LENGTH;
+        if (tile < NUMBER_OF_TILES)
+            dirty[tile / Long.SIZE] |= 1L << tile;
+    }
+
+    /**
+     * Marks every tile as modified
+     */
+    void invalidateAll() {
+        Arrays.fill(dirty, -1L);
+    }
+
+    /**
+     * Returns the given row of the given tile
+     * @param tile the index of the tile, between 0 and 383
+     * @param row the index of the row in the tile, between 0 and 7
+     * @param flipped whether the tile is flipped horizontally
+     * @return the row in the form msb << 8 | lsb, the pixel drawn first
+     * being at bit 0
+     */
+    int row(int tile, int row, boolean flipped) {
+        Objects.checkIndex(tile, NUMBER_OF_TILES);
+        Objects.checkIndex(row, TILE_SIZE);
+
+        if ((dirty[tile / Long.SIZE] & 1L << tile) != 0)
+            decode(tile);
+
+        int index = tile * TILE_SIZE + row;
+        return flipped ? flippedRows[index] : rows[index];
+    }
+
+    /**
+     * Decodes every row of the given tile
+     */
+    private void decode(int tile) {
+        for (int row = 0; row < TILE_SIZE; ++row) {
+            int address = tile * TILE_LENGTH + row * 2;
+            int lsb = videoRam.read(address);
+            int msb = videoRam.read(address + 1);
+
+            flippedRows[tile * TILE_SIZE + row] = Bits.make16(msb, lsb);
+            rows[tile * TILE_SIZE + row] = Bits.make16(Bits.reverse8(msb),
+                    Bits.reverse8(lsb));
+        }
+        dirty[tile / Long.SIZE] &= ~(1L << tile);
+    }
+}
@@ -1,23 +1,30 @@
 package ch.epfl.gameboj.component.memory;
 
 import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.Stateful;
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
  * Class simulating a BootRom controller.
  * @author Matthieu De Beule (Sciper: 269623)
  */
-public class BootRomController implements Component {
+public class BootRomController implements Component, Stateful {
+    //The boot ROM never changes, so every controller can share it
+    private static final Rom BOOT_ROM = new Rom(BootRom.DATA);
 
     private final Cartridge cartridge;
     private final Rom bootRom;
 
     //this boolean will be set to false once 0xFF50 is written to
     private boolean bootRomActivated;
+    //Mapping of the memory on the bus, null until attached to a bus
+    private Bus.DirectMapping mapping;
 
     /**
      * Make new controller of the boot ROM. Handles whether data is read from
@@ -27,7 +34,7 @@ public class BootRomController implements Component {
      */
     public BootRomController(Cartridge cartridge){
         Objects.requireNonNull(cartridge);
-        bootRom = new Rom(BootRom.DATA);
+        bootRom = BOOT_ROM;
         this.cartridge = cartridge;
         bootRomActivated = true;
     }
@@ -44,13 +51,66 @@ public class BootRomController implements Component {
         return cartridge.read(address);
     }
 
+    /**
+     * Attaches the controller to the given bus, and maps the boot ROM and
+     * the cartridge's memory directly on it
+     * @param bus to attach to
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        Component.super.attachTo(bus);
+        mapping = bus.directMapping(this);
+        remap();
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (bootRomActivated ? 1 : 0));
+        cartridge.saveState(buffer);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        bootRomActivated = buffer.get() != 0;
+        cartridge.loadState(buffer);
+        remap();
+    }
+
+    @Override
+    public int[] addressRanges() {
+        return new int[] {
+                AddressMap.CARTRIDGE_ROM_START, AddressMap.CARTRIDGE_ROM_END,
+                AddressMap.CARTRIDGE_RAM_START, AddressMap.CARTRIDGE_RAM_END,
+                AddressMap.REG_BOOT_ROM_DISABLE,
+                AddressMap.REG_BOOT_ROM_DISABLE + 1 };
+    }
+
     @Override
     public void write(int address, int data) {
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
 
+        boolean wasActivated = bootRomActivated;
         if (address == AddressMap.REG_BOOT_ROM_DISABLE)
             bootRomActivated = false;
         cartridge.write(address, data);
+
+        //The cartridge may have mapped one of its banks over the boot ROM
+        if (wasActivated)
+            remap();
+    }
+
+    /**
+     * Maps the cartridge's memory, and then the boot ROM over it if it is
+     * activated, if the controller is attached to a bus
+     */
+    private void remap() {
+        if (mapping == null)
+            return;
+
+        cartridge.mapOn(mapping);
+        if (bootRomActivated)
+            mapping.map(AddressMap.BOOT_ROM_START, AddressMap.BOOT_ROM_END,
+                    bootRom.buffer(), 0, false);
     }
 }
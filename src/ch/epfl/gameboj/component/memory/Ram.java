@@ -1,6 +1,9 @@
 package ch.epfl.gameboj.component.memory;
 
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.Stateful;
+
+import java.nio.ByteBuffer;
 
 import static java.lang.Byte.toUnsignedInt;
 
@@ -9,7 +12,7 @@ import static java.lang.Byte.toUnsignedInt;
  * @author Matthieu De Beule (Sciper: 269623)
  * @author Andrew Dobis (Sciper: 272002)
  */
-public final class Ram {
+public final class Ram implements Stateful {
 
     private final int size;
     private final byte[] ram;
@@ -56,4 +59,23 @@ public final class Ram {
 
         ram[index] = (byte) value;
     }
+
+    /**
+     * Returns a view of the content of the RAM, whose index 0 is the first
+     * byte of the RAM, and through which the RAM can be modified
+     * @return a buffer viewing the RAM
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(ram);
+    }
+
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put(ram);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        buffer.get(ram);
+    }
 }
\ No newline at end of file
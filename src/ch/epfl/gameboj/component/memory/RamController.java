@@ -1,5 +1,6 @@
 package ch.epfl.gameboj.component.memory;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.Component;
 
@@ -39,6 +40,27 @@ public final class RamController implements Component {
         this(ram, startAddress, ram.size() + startAddress);
     }
 
+    @Override
+    public int[] addressRanges() {
+        return new int[] { startAddress, endAddress };
+    }
+
+    /**
+     * Attaches the controller to the given bus, and maps the RAM directly on
+     * the whole pages it covers
+     * @param bus to attach to
+     */
+    @Override
+    public void attachTo(Bus bus) {
+        Component.super.attachTo(bus);
+
+        int start = (startAddress + Bus.PAGE_SIZE - 1) & -Bus.PAGE_SIZE;
+        int end = endAddress & -Bus.PAGE_SIZE;
+        if (start < end)
+            bus.directMapping(this).map(start, end, contRam.buffer(),
+                    start - startAddress, true);
+    }
+
     /**
      * Reads the byte located at the given address in the ram controlled by
      * the ramController.
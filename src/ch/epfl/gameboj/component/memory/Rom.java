@@ -1,5 +1,6 @@
 package ch.epfl.gameboj.component.memory;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -7,10 +8,14 @@ import static java.lang.Byte.toUnsignedInt;
 
 /**
  * Class simulating Read Only Memory
+ *
+ * The content is only ever read with absolute indices, so a single Rom can
+ * be shared by any number of GameBoys, including concurrently.
+ *
  * @author Andrew Dobis (Sciper: 272002)
  */
 public final class Rom {
-    private final byte[] rom;
+    private final ByteBuffer rom;
 
     /**
      * Constructs the read only memory part of the emulator
@@ -18,14 +23,37 @@ public final class Rom {
      */
     public Rom(byte[] data) {
         Objects.requireNonNull(data);
-        rom = Arrays.copyOf(data, data.length);
+        rom = ByteBuffer.wrap(Arrays.copyOf(data, data.length));
+    }
+
+    private Rom(ByteBuffer data) {
+        rom = data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read only memory viewing the given buffer, without copying
+     * it. The buffer, from index 0 to its limit, must never be modified.
+     * @param data the content of the ROM, for example a mapped file
+     * @return a ROM whose content is the given buffer
+     */
+    static Rom viewOf(ByteBuffer data) {
+        return new Rom(data);
     }
 
     /**
      * @return byte size of the ROM
      */
     public int size() {
-        return rom.length;
+        return rom.limit();
+    }
+
+    /**
+     * Returns a read only view of the content of the ROM, whose index 0 is
+     * the first byte of the ROM
+     * @return a buffer viewing the ROM
+     */
+    public ByteBuffer buffer() {
+        return rom.asReadOnlyBuffer();
     }
 
     /**
@@ -35,10 +63,10 @@ public final class Rom {
      * (between 0 and FF)
      */
     public int read(int index) {
-        if (index < 0 || index >= rom.length) {
+        if (index < 0 || index >= rom.limit()) {
             throw new IndexOutOfBoundsException();
         } else {
-            return toUnsignedInt(rom[index]);
+            return toUnsignedInt(rom.get(index));
         }
     }
-}
\ No newline at end of file
+}
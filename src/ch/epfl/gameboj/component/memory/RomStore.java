@@ -0,0 +1,189 @@
+package ch.epfl.gameboj.component.memory;
+
+import ch.epfl.gameboj.Preconditions;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Store of ROM images shared between GameBoys.
+ *
+ * Files are memory-mapped instead of being read onto the heap, and ROMs with
+ * the same content are only kept once, whichever file they come from. A file
+ * loaded again with the same size and modification time is recognized
+ * without being read. A ROM is forgotten by the store once no GameBoy uses
+ * it anymore.
+ *
+ * @author Andrew Dobis (Sciper: 272002)
+ * @author Matthieu De Beule (Sciper: 269623)
+ */
+public final class RomStore {
+    private static final RomStore SHARED = new RomStore();
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    //ROMs by digest of their content
+    private final Map<ByteBuffer, RomReference> roms =
+            new ConcurrentHashMap<>();
+    //ROMs by file they were loaded from
+    private final Map<FileKey, RomReference> files =
+            new ConcurrentHashMap<>();
+    //References to the ROMs no longer used, to be removed from the maps
+    private final ReferenceQueue<Rom> released = new ReferenceQueue<>();
+
+    /**
+     * Constructs an empty store, independent of the shared one
+     */
+    public RomStore() {}
+
+    /**
+     * Returns the store shared by the whole program
+     * @return the shared store
+     */
+    public static RomStore shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns a ROM containing the given file, shared with every other ROM
+     * of the store having the same content
+     * @param romFile the file containing the ROM, which mustn't be modified
+     *                while the ROM is used
+     * @return a ROM containing the data of the given file
+     * @throws IOException if there is an I/O error (including the file not
+     * existing)
+     * @throws IllegalArgumentException if the file is too big to be a ROM
+     */
+    public Rom load(Path romFile) throws IOException {
+        purge();
+
+        BasicFileAttributes attributes =
+                Files.readAttributes(romFile, BasicFileAttributes.class);
+        FileKey file = new FileKey(romFile.toAbsolutePath().normalize(),
+                attributes.size(), attributes.lastModifiedTime());
+        RomReference known = files.get(file);
+        Rom knownRom = known == null ? null : known.get();
+        if (knownRom != null)
+            return knownRom;
+
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(romFile,
+                StandardOpenOption.READ)) {
+            Preconditions.checkArgument(channel.size() <= Integer.MAX_VALUE);
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+
+        ByteBuffer key = digest(data);
+        Rom rom = Rom.viewOf(data);
+        RomReference added = new RomReference(rom, key, released);
+        RomReference stored = roms.merge(key, added,
+                (old, a) -> old.get() == null ? a : old);
+        Rom shared = stored.get();
+        if (shared == null) {
+            //The stored ROM was released since the merge
+            roms.put(key, added);
+            stored = added;
+            shared = rom;
+        }
+        files.put(file, stored);
+        return shared;
+    }
+
+    /**
+     * @return the number of distinct ROMs currently in the store
+     */
+    public int size() {
+        purge();
+        roms.values().removeIf(r -> r.get() == null);
+        return roms.size();
+    }
+
+    /**
+     * Removes from the maps the references to the ROMs released since the
+     * last purge
+     */
+    private void purge() {
+        Set<Reference<? extends Rom>> purged = new HashSet<>();
+        for (Reference<? extends Rom> r = released.poll(); r != null;
+                r = released.poll()) {
+            roms.remove(((RomReference) r).digest, r);
+            purged.add(r);
+        }
+        if (!purged.isEmpty())
+            files.values().removeIf(purged::contains);
+    }
+
+    /**
+     * Computes the digest of the given data, from index 0 to its limit
+     */
+    private static ByteBuffer digest(ByteBuffer data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            digest.update(data.duplicate());
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            //Every implementation of the platform supports SHA-256
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * Weak reference to a ROM of the store, knowing the digest of its content
+     */
+    private static final class RomReference extends WeakReference<Rom> {
+        private final ByteBuffer digest;
+
+        private RomReference(Rom rom, ByteBuffer digest,
+                ReferenceQueue<Rom> queue) {
+            super(rom, queue);
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * A file, as it was when it was loaded
+     */
+    private static final class FileKey {
+        private final Path path;
+        private final long size;
+        private final FileTime lastModified;
+
+        private FileKey(Path path, long size, FileTime lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object that) {
+            if (that instanceof FileKey) {
+                FileKey thatKey = (FileKey) that;
+                return path.equals(thatKey.path) && size == thatKey.size
+                        && lastModified.equals(thatKey.lastModified);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified);
+        }
+    }
+}
@@ -8,28 +8,38 @@ import javafx.scene.image.*;
 /**
  * Adapter converting the GameBoy's Images into javaFX images
  *
+ * The same javaFX image is reused for every conversion, its pixels being
+ * written all at once.
+ *
  * @author Matthieu De Beule (Sciper: 269623)
  */
-public class ImageConverter {
+public final class ImageConverter {
     private static final int[] COLOR_MAP = new int[] {
             0xFF_FF_FF_FF, 0xFF_D3_D3_D3, 0xFF_A9_A9_A9, 0xFF_00_00_00
     };
+    private static final int WIDTH = LcdController.LCD_WIDTH;
+    private static final int HEIGHT = LcdController.LCD_HEIGHT;
+
+    private final WritableImage writtenImage;
+    private final int[] argb;
 
     /**
-     * Coverts the given LcdImage into a javaFX Image
-     * @param lcdimage the given image to be converted
-     * @return a usable javaFX image
+     * Constructs a converter and the javaFX image it writes into
      */
-    public static Image convert(LcdImage lcdimage){
-        int width = LcdController.LCD_WIDTH;
-        int height = LcdController.LCD_HEIGHT;
-
-        WritableImage writtenImage = new WritableImage(width, height);
-        PixelWriter pixelWriter = writtenImage.getPixelWriter();
+    public ImageConverter() {
+        writtenImage = new WritableImage(WIDTH, HEIGHT);
+        argb = new int[WIDTH * HEIGHT];
+    }
 
-        for (int y = 0; y < height; ++y)
-            for (int x = 0; x < width; ++x)
-                pixelWriter.setArgb(x, y, COLOR_MAP[lcdimage.get(x, y)]);
+    /**
+     * Coverts the given LcdImage into the converter's javaFX Image
+     * @param lcdimage the given image to be converted
+     * @return a usable javaFX image, the same for every conversion
+     */
+    public Image convert(LcdImage lcdimage){
+        lcdimage.mapPixels(COLOR_MAP, argb);
+        writtenImage.getPixelWriter().setPixels(0, 0, WIDTH, HEIGHT,
+                PixelFormat.getIntArgbInstance(), argb, 0, WIDTH);
 
         return writtenImage;
     }
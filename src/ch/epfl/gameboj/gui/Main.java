@@ -1,6 +1,7 @@
 package ch.epfl.gameboj.gui;
 
 import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.RewindBuffer;
 import ch.epfl.gameboj.component.Joypad;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 import ch.epfl.gameboj.component.lcd.LcdController;
@@ -28,6 +29,10 @@ import java.util.Map;
 public final class Main extends Application {
     private static final int GUI_WIDTH = LcdController.LCD_WIDTH * 2;
     private static final int GUI_HEIGHT = LcdController.LCD_HEIGHT * 2;
+    //A snapshot every 4 frames, 10 minutes of rewind at most
+    private static final int REWIND_FRAMES_PER_SNAPSHOT = 4;
+    private static final int REWIND_CAPACITY = 10 * 60 * 60
+            / REWIND_FRAMES_PER_SNAPSHOT;
     public static void main(String[] args) {
         Application.launch(args);
     }
@@ -57,6 +62,10 @@ public final class Main extends Application {
         String parameter = getParameters().getRaw().get(0);
         Cartridge cartridge = Cartridge.ofFile(new File(parameter));
         GameBoy gameBoy = new GameBoy(cartridge);
+        RewindBuffer rewindBuffer = new RewindBuffer(gameBoy, REWIND_CAPACITY,
+                REWIND_FRAMES_PER_SNAPSHOT);
+        //whether the rewind key is held
+        boolean[] rewinding = { false };
 
         ImageView imageView = new ImageView();
         imageView.setFitWidth(GUI_WIDTH * 2);
@@ -100,6 +109,11 @@ public final class Main extends Application {
                 }
             }
 
+            //the game goes back in time as long as R is held
+            if(key.getCode() == KeyCode.R) {
+                rewinding[0] = true;
+            }
+
             if(key.getCode() == KeyCode.F6) {
                 try {
                     cartridge.loadState();
@@ -116,6 +130,10 @@ public final class Main extends Application {
             else if (joypadMapChar.containsKey(key.getText())){
                 gameBoy.joypad().keyReleased(joypadMapChar.get(key.getText()));
             }
+
+            if(key.getCode() == KeyCode.R) {
+                rewinding[0] = false;
+            }
         });
 
         imageView.setOnKeyPressed(keyPressed);
@@ -129,15 +147,26 @@ public final class Main extends Application {
         primaryStage.show();
         imageView.requestFocus();
 
-        long start = System.nanoTime();
-
+        ImageConverter imageConverter = new ImageConverter();
         AnimationTimer timer = new AnimationTimer() {
+            //the emulation advances by the time elapsed since the last frame,
+            //as rewinding brings the GameBoy's cycles back
+            private long previous = System.nanoTime();
+
             @Override
             public void handle(long now) {
-                long elapsedCycles = (long) ((now - start) * GameBoy.CYCLES_PER_NANOSECOND);
-                gameBoy.runUntil(elapsedCycles);
-                imageView.setImage(ImageConverter.convert(gameBoy.
-                        lcdController().currentImage()));
+                long elapsedCycles = (long) (Math.max(0, now - previous)
+                        * GameBoy.CYCLES_PER_NANOSECOND);
+                previous = now;
+
+                if (rewinding[0]) {
+                    rewindBuffer.rewind();
+                } else {
+                    gameBoy.runUntil(gameBoy.cycles() + elapsedCycles);
+                    rewindBuffer.record();
+                }
+                imageView.setImage(imageConverter.convert(gameBoy.
+                        lcdController().liveImage()));
             }
         };
         timer.start();
@@ -5,9 +5,11 @@ package ch.epfl.gameboj;
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
@@ -90,6 +92,120 @@ class BusTest {
             assertEquals((i * 2018) & 0xFF, b.read(i));
     }
 
+    @Test
+    void componentIsOnlyAccessedOnItsPages() {
+        SimpleComponent c = new SimpleComponent(0x1234, 42) {
+            @Override
+            public int[] addressRanges() {
+                return new int[] { 0x1200, 0x1300 };
+            }
+        };
+        Bus b = new Bus();
+        b.attach(c);
+
+        b.read(0x1300);
+        b.write(0x11FF, 0);
+        assertFalse(c.wasRead());
+        assertFalse(c.wasWritten());
+
+        assertEquals(42, b.read(0x1234));
+        b.write(0x12FF, 0);
+        assertTrue(c.wasRead());
+        assertTrue(c.wasWritten());
+    }
+
+    @Test
+    void componentsSharingAPageAreReadInAttachOrder() {
+        Bus b = new Bus();
+        b.attach(new SimpleComponent(0xFF80, 1));
+        b.attach(new SimpleComponent(0xFF80, 2));
+        assertEquals(1, b.read(0xFF80));
+    }
+
+    @Test
+    void directlyMappedPagesDontAccessTheirComponent() {
+        SimpleComponent c = new SimpleComponent(0x1234, 42) {
+            @Override
+            public int[] addressRanges() {
+                return new int[] { 0x1200, 0x1400 };
+            }
+        };
+        Bus b = new Bus();
+        b.attach(c);
+        byte[] memory = new byte[0x300];
+        memory[0x134] = 7;
+        b.directMapping(c).map(0x1200, 0x1300, ByteBuffer.wrap(memory), 0x100,
+                true);
+
+        assertEquals(7, b.read(0x1234));
+        b.write(0x12FF, 9);
+        assertEquals(9, memory[0x1FF]);
+        assertFalse(c.wasRead());
+        assertFalse(c.wasWritten());
+
+        b.read(0x1300);
+        assertTrue(c.wasRead());
+
+        b.directMapping(c).unmap(0x1200, 0x1300);
+        assertEquals(42, b.read(0x1234));
+    }
+
+    @Test
+    void readOnlyPagesAreWrittenThroughTheirComponent() {
+        SimpleComponent c = new SimpleComponent(0x1234, 42);
+        Bus b = new Bus();
+        b.attach(c);
+        ByteBuffer memory = ByteBuffer.allocate(0x100).asReadOnlyBuffer();
+        b.directMapping(c).map(0x1200, 0x1300, memory, 0, false);
+
+        b.write(0x1234, 1);
+        assertTrue(c.wasWritten());
+        assertEquals(0, b.read(0x1234));
+        assertFalse(c.wasRead());
+        assertThrows(IllegalArgumentException.class,
+                () -> b.directMapping(c).map(0x1200, 0x1300, memory, 0, true));
+    }
+
+    @Test
+    void sharedPagesAreNeverMappedDirectly() {
+        SimpleComponent c1 = new SimpleComponent(0x1234, 1);
+        SimpleComponent c2 = new SimpleComponent(0x2234, 2);
+        Bus b = new Bus();
+        b.attach(c1);
+        b.directMapping(c1).map(0x2200, 0x2300, ByteBuffer.allocate(0x100),
+                0, true);
+        b.attach(c2);
+        assertEquals(2, b.read(0x2234));
+
+        b.directMapping(c1).map(0x2200, 0x2300, ByteBuffer.allocate(0x100),
+                0, true);
+        assertEquals(2, b.read(0x2234));
+    }
+
+    @Test
+    void directMappingFailsForPartialPages() {
+        SimpleComponent c = new SimpleComponent(0, 0);
+        Bus b = new Bus();
+        b.attach(c);
+        ByteBuffer memory = ByteBuffer.allocate(0x200);
+        assertThrows(IllegalArgumentException.class,
+                () -> b.directMapping(c).map(0x1280, 0x1300, memory, 0, true));
+        assertThrows(IllegalArgumentException.class,
+                () -> b.directMapping(c).map(0x1200, 0x1400, memory, 1, true));
+    }
+
+    @Test
+    void attachFailsForInvalidRanges() {
+        Bus b = new Bus();
+        assertThrows(IllegalArgumentException.class,
+                () -> b.attach(new SimpleComponent(0, 0) {
+                    @Override
+                    public int[] addressRanges() {
+                        return new int[] { 0x100, 0x10001 };
+                    }
+                }));
+    }
+
     @Test
     void writeFailsForInvalidAddress() {
         Random rng = newRandom();
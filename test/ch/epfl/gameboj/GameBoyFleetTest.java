@@ -0,0 +1,150 @@
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.epfl.gameboj.GameBoyFleet.Outcome;
+import ch.epfl.gameboj.GameBoyFleet.Session;
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+class GameBoyFleetTest {
+    private static final long BUDGET = 10L * LcdController.IMAGE_CYCLES + 7;
+
+    @Test
+    void constructorFailsForInvalidParallelism() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new GameBoyFleet(0));
+    }
+
+    @Test
+    void sessionsBehaveLikeSequentialRuns() throws InterruptedException {
+        GameBoy reference = new GameBoy(
+                CartridgeTest.cartridgeWithData(new byte[0x8000]));
+        reference.runUntil(BUDGET);
+        byte[] expected = reference.snapshot();
+
+        List<Session<byte[]>> sessions = new ArrayList<>();
+        for (int i = 0; i < 8; ++i)
+            sessions.add(new Session<>(
+                    () -> CartridgeTest.cartridgeWithData(new byte[0x8000]),
+                    BUDGET, GameBoy::snapshot));
+
+        try (GameBoyFleet fleet = new GameBoyFleet(4)) {
+            for (Outcome<byte[]> outcome : fleet.runAll(sessions)) {
+                assertTrue(outcome.succeeded());
+                assertEquals(BUDGET, outcome.cycles());
+                assertArrayEquals(expected, outcome.result());
+            }
+        }
+    }
+
+    @Test
+    void sessionsCanEndEarly() throws InterruptedException {
+        Session<Long> session = new Session<>(
+                () -> CartridgeTest.cartridgeWithData(new byte[0x8000]),
+                BUDGET, g -> g.cycles() >= 3 * LcdController.IMAGE_CYCLES,
+                GameBoy::cycles);
+
+        try (GameBoyFleet fleet = new GameBoyFleet(1)) {
+            Outcome<Long> outcome = fleet.runAll(List.of(session)).get(0);
+            assertEquals(3 * LcdController.IMAGE_CYCLES,
+                    (long) outcome.result());
+        }
+    }
+
+    @Test
+    void failuresAreCapturedPerSession() throws InterruptedException {
+        List<Session<Long>> sessions = List.of(
+                new Session<>(() -> {
+                    throw new IOException();
+                }, BUDGET, GameBoy::cycles),
+                new Session<>(
+                        () -> CartridgeTest.cartridgeWithData(new byte[0x8000]),
+                        BUDGET, GameBoy::cycles));
+
+        try (GameBoyFleet fleet = new GameBoyFleet(2)) {
+            List<Outcome<Long>> outcomes = fleet.runAll(sessions);
+            assertFalse(outcomes.get(0).succeeded());
+            assertTrue(outcomes.get(0).failure() instanceof IOException);
+            assertThrows(IllegalStateException.class,
+                    () -> outcomes.get(0).result());
+            assertEquals(BUDGET, (long) outcomes.get(1).result());
+        }
+    }
+
+    @Test
+    void errorsAreCapturedPerSession() throws InterruptedException {
+        Session<Long> session = new Session<>(
+                () -> CartridgeTest.cartridgeWithData(new byte[0x8000]),
+                BUDGET, g -> {
+                    if (g.cycles() >= 2 * LcdController.IMAGE_CYCLES)
+                        throw new StackOverflowError();
+                    return false;
+                }, GameBoy::cycles);
+
+        try (GameBoyFleet fleet = new GameBoyFleet(1)) {
+            Outcome<Long> outcome = fleet.runAll(List.of(session)).get(0);
+            assertFalse(outcome.succeeded());
+            assertTrue(outcome.failure() instanceof StackOverflowError);
+            assertEquals(2 * LcdController.IMAGE_CYCLES, outcome.cycles());
+        }
+    }
+
+    @Test
+    void vmErrorsAreThrownByRunAll() {
+        Session<Long> session = new Session<>(
+                () -> CartridgeTest.cartridgeWithData(new byte[0x8000]),
+                BUDGET, g -> {
+                    throw new OutOfMemoryError();
+                }, GameBoy::cycles);
+
+        try (GameBoyFleet fleet = new GameBoyFleet(1)) {
+            assertThrows(OutOfMemoryError.class,
+                    () -> fleet.runAll(List.of(session)));
+        }
+    }
+
+    @Test
+    void closeInterruptsTheRunningSessions() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Session<Long> endless = new Session<>(
+                () -> CartridgeTest.cartridgeWithData(new byte[0x8000]),
+                Long.MAX_VALUE, g -> {
+                    started.countDown();
+                    return false;
+                }, GameBoy::cycles);
+
+        GameBoyFleet fleet = new GameBoyFleet(1);
+        List<Outcome<Long>> outcomes = new ArrayList<>();
+        Thread runner = new Thread(() -> {
+            try {
+                outcomes.addAll(fleet.runAll(List.of(endless)));
+            } catch (InterruptedException e) {
+                throw new Error(e);
+            }
+        });
+        runner.start();
+        started.await();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            Thread.currentThread().interrupt();
+            fleet.close();
+            assertTrue(Thread.interrupted());
+        });
+        runner.join();
+        assertEquals(1, outcomes.size());
+        assertTrue(outcomes.get(0).failure() instanceof InterruptedException);
+    }
+}
@@ -2,13 +2,17 @@
 
 package ch.epfl.gameboj;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Opcode;
 import ch.epfl.gameboj.component.cpu.S4CpuTest;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.RamController;
+import java.util.Arrays;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
@@ -81,4 +85,51 @@ class GameBoyTest {
         g.runUntil(2);
         assertEquals(2, g.cycles());
     }
+
+    @Test
+    void restoringASnapshotReplaysTheSameExecution() {
+        GameBoy g = new GameBoy(CartridgeTest.cartridgeWithData(new byte[0x8000]));
+        g.runUntil(100_000);
+        byte[] snapshot = g.snapshot();
+
+        g.runUntil(300_000);
+        byte[] expected = g.snapshot();
+
+        g.restore(snapshot);
+        assertEquals(100_000, g.cycles());
+        assertArrayEquals(snapshot, g.snapshot());
+
+        g.runUntil(300_000);
+        assertArrayEquals(expected, g.snapshot());
+    }
+
+    @Test
+    void restoreFailsForInvalidSnapshot() {
+        GameBoy g = new GameBoy(CartridgeTest.cartridgeWithData(new byte[0x8000]));
+        byte[] snapshot = g.snapshot();
+        snapshot[0] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> g.restore(snapshot));
+        assertThrows(IllegalArgumentException.class,
+                () -> g.restore(new byte[2]));
+    }
+
+    @Test
+    void failedRestoreLeavesTheGameBoyUnchanged() {
+        GameBoy g = new GameBoy(CartridgeTest.cartridgeWithData(new byte[0x8000]));
+        g.runUntil(100_000);
+        byte[] corrupt = g.snapshot();
+        //Among others, the mode of the LCD controller is invalid
+        Arrays.fill(corrupt, 2 * Integer.BYTES, corrupt.length, (byte) 0x7F);
+        byte[] truncated = Arrays.copyOf(g.snapshot(), corrupt.length - 1);
+
+        g.runUntil(200_000);
+        byte[] expected = g.snapshot();
+
+        assertThrows(IllegalArgumentException.class, () -> g.restore(corrupt));
+        assertArrayEquals(expected, g.snapshot());
+        assertThrows(IllegalArgumentException.class,
+                () -> g.restore(truncated));
+        assertArrayEquals(expected, g.snapshot());
+        assertEquals(200_000, g.cycles());
+    }
 }
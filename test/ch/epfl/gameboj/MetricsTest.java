@@ -0,0 +1,93 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+
+    @Test
+    void countersCountInstructionsInterruptsAndHaltedCycles() {
+        Bus bus = new Bus();
+        Ram ram = new Ram(0x8000);
+        ram.write(0, 0xFB); //EI
+        ram.write(1, 0x76); //HALT
+        new RamController(ram, 0).attachTo(bus);
+        Cpu cpu = new Cpu();
+        cpu.attachTo(bus);
+        bus.write(AddressMap.REG_IE, Interrupt.TIMER.mask());
+
+        for (long c = 0; c < 100; ++c) {
+            if (c == 50)
+                cpu.requestInterrupt(Interrupt.TIMER);
+            cpu.cycle(c);
+        }
+
+        //HALT itself takes no cycle, so the CPU is halted from cycle 1 to 50
+        assertEquals(49, cpu.haltedCycles());
+        assertEquals(1, cpu.interruptsServiced(Interrupt.TIMER));
+        assertEquals(0, cpu.interruptsServiced(Interrupt.VBLANK));
+        //EI, HALT, then a NOP per cycle after the 5 cycles of the interrupt
+        assertEquals(2 + 45, cpu.instructionsRetired());
+    }
+
+    @Test
+    void haltedCyclesAreCountedAfterRestoringAHaltedCpu() {
+        Ram ram = new Ram(0x8000);
+        ram.write(0, 0xFB); //EI
+        ram.write(1, 0x76); //HALT
+        Cpu[] cpus = new Cpu[2];
+        for (int i = 0; i < cpus.length; ++i) {
+            Bus bus = new Bus();
+            new RamController(ram, 0).attachTo(bus);
+            cpus[i] = new Cpu();
+            cpus[i].attachTo(bus);
+            bus.write(AddressMap.REG_IE, Interrupt.TIMER.mask());
+        }
+
+        for (long c = 0; c < 20; ++c)
+            cpus[0].cycle(c);
+        ByteBuffer state = ByteBuffer.allocate(1 << 10);
+        cpus[0].saveState(state);
+        state.flip();
+        cpus[1].loadState(state);
+        cpus[1].restoredAt(20);
+
+        for (long c = 20; c < 100; ++c) {
+            if (c == 50)
+                cpus[1].requestInterrupt(Interrupt.TIMER);
+            cpus[1].cycle(c);
+        }
+
+        assertEquals(30, cpus[1].haltedCycles());
+        assertEquals(1, cpus[1].interruptsServiced(Interrupt.TIMER));
+    }
+
+    @Test
+    void countersDontGoBackWhenSnapshotIsRestored() {
+        GameBoy g = new GameBoy(
+                CartridgeTest.cartridgeWithData(new byte[0x8000]));
+        g.runUntil(10 * LcdController.IMAGE_CYCLES);
+        byte[] snapshot = g.snapshot();
+        Metrics.Sample s1 = g.metrics().sample();
+
+        g.runUntil(20 * LcdController.IMAGE_CYCLES);
+        g.restore(snapshot);
+        Metrics.Sample s2 = g.metrics().sample();
+
+        assertEquals(10 * LcdController.IMAGE_CYCLES, s1.cycles());
+        assertEquals(20 * LcdController.IMAGE_CYCLES, s2.cycles());
+        assertTrue(s2.instructions() > s1.instructions());
+        assertEquals(s1.frames() + 10, s2.frames());
+        assertTrue(s2.nanoTime() >= s1.nanoTime());
+    }
+}
@@ -0,0 +1,97 @@
+package ch.epfl.gameboj;
+
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RewindBufferTest {
+
+    private static GameBoy newGameBoy() {
+        return new GameBoy(CartridgeTest.cartridgeWithData(new byte[0x8000]));
+    }
+
+    @Test
+    void rewindRestoresRecordedStatesFromNewestToOldest() {
+        GameBoy g = newGameBoy();
+        RewindBuffer buffer = new RewindBuffer(g, 100, 1);
+        List<byte[]> states = new ArrayList<>();
+
+        for (int i = 1; i <= 10; ++i) {
+            g.runUntil((long) i * LcdController.IMAGE_CYCLES);
+            buffer.record();
+            states.add(g.snapshot());
+            if (i % 3 == 0)
+                g.joypad().keyPressed(Joypad.Key.A);
+        }
+        assertEquals(9, buffer.size());
+
+        for (int i = states.size() - 2; i >= 0; --i) {
+            assertTrue(buffer.rewind());
+            assertArrayEquals(states.get(i), g.snapshot());
+        }
+        assertFalse(buffer.rewind());
+    }
+
+    @Test
+    void oldestStatesAreForgottenWhenFull() {
+        GameBoy g = newGameBoy();
+        RewindBuffer buffer = new RewindBuffer(g, 3, 2);
+
+        for (int i = 1; i <= 20; ++i) {
+            g.runUntil((long) i * LcdController.IMAGE_CYCLES);
+            buffer.record();
+        }
+        //The latest state, of frame 19, can also be restored
+        assertEquals(4, buffer.size());
+
+        while (buffer.rewind())
+            ;
+        //States were recorded on frames 1, 3, ..., 19
+        assertEquals(13 * LcdController.IMAGE_CYCLES, g.cycles());
+    }
+
+    @Test
+    void firstRewindRestoresTheLatestStateIfTheGameBoyRanSince() {
+        GameBoy g = newGameBoy();
+        RewindBuffer buffer = new RewindBuffer(g, 10, 2);
+        List<byte[]> states = new ArrayList<>();
+
+        for (int i = 1; i <= 3; ++i) {
+            g.runUntil((long) 2 * i * LcdController.IMAGE_CYCLES);
+            buffer.record();
+            states.add(g.snapshot());
+        }
+        g.runUntil(7 * LcdController.IMAGE_CYCLES);
+        assertEquals(3, buffer.size());
+
+        for (int i = states.size() - 1; i >= 0; --i) {
+            assertTrue(buffer.rewind());
+            assertArrayEquals(states.get(i), g.snapshot());
+            assertEquals(i, buffer.size());
+        }
+        assertFalse(buffer.rewind());
+
+        g.runUntil(g.cycles() + LcdController.IMAGE_CYCLES);
+        assertEquals(1, buffer.size());
+        assertTrue(buffer.rewind());
+        assertArrayEquals(states.get(0), g.snapshot());
+    }
+
+    @Test
+    void constructorFailsForInvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RewindBuffer(newGameBoy(), 0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RewindBuffer(newGameBoy(), 1, 0));
+    }
+}
@@ -166,4 +166,33 @@ public class BitVectorTest {
         assertArrayEquals(expected1, test2.getData());
         assertArrayEquals(expectedNull, test3.getData());
     }
+
+    @Test
+    void notKeepsSizeAndEquality() {
+        BitVector zero = new BitVector(Integer.SIZE * 3);
+        BitVector one = new BitVector(Integer.SIZE * 3, true);
+
+        assertEquals(one, zero.not());
+        assertEquals(zero, one.not());
+        assertEquals(zero, zero.not().not());
+        assertEquals(Integer.SIZE * 3, zero.not().size());
+    }
+
+    @Test
+    void selectMultiplexesTheVectors() {
+        BitVector mask = new BitVector.Builder(Integer.SIZE * 3)
+                .setInt(0, 0xFFFF0000).setInt(2, 0xF0F0F0F0).build();
+        BitVector a = new BitVector.Builder(Integer.SIZE * 3)
+                .setInt(0, 0x12345678).setInt(1, 0x9ABCDEF0)
+                .setInt(2, 0x0FEDCBA9).build();
+        BitVector b = new BitVector(Integer.SIZE * 3, true);
+
+        assertEquals(mask.and(a).or(mask.not().and(b)),
+                BitVector.select(mask, a, b));
+        assertArrayEquals(new int[] {0x1234FFFF, 0xFFFFFFFF, 0x0FEFCFAF},
+                BitVector.select(mask, a, b).getData());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> BitVector.select(mask, a, new BitVector(Integer.SIZE)));
+    }
 }
@@ -158,4 +158,49 @@ public final class TimerTest implements ComponentTest {
             assertEquals(t.read(0xFF05), tma);
         }
     }
+
+    @Test
+    void skippedCyclesAreCaughtUpOnRead() {
+        Random rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; ++i) {
+            int tac = 0b100 | rng.nextInt(4);
+            int tma = rng.nextInt(0x100);
+            Timer stepped = newComponent();
+            Timer skipped = newComponent();
+            for (Timer t : new Timer[] { stepped, skipped }) {
+                t.write(0xFF07, tac);
+                t.write(0xFF06, tma);
+            }
+
+            int cycles = rng.nextInt(0x4000);
+            for (int c = 0; c <= cycles; ++c)
+                stepped.cycle(c);
+            skipped.cycle(cycles);
+
+            assertEquals(stepped.read(0xFF04), skipped.read(0xFF04));
+            assertEquals(stepped.read(0xFF05), skipped.read(0xFF05));
+        }
+    }
+
+    @Test
+    void nextEventCycleIsTheOverflowCycle() {
+        Cpu cpu = new Cpu();
+        Timer t = new Timer(cpu);
+        t.write(0xFF07, 0b101);
+        t.write(0xFF05, 0xFE);
+        long overflow = t.nextEventCycle(0);
+        assertEquals(7, overflow);
+
+        t.cycle(overflow - 1);
+        assertEquals(0, cpu.read(0xFF0F));
+        t.cycle(overflow);
+        assertEquals(1 << Cpu.Interrupt.TIMER.index(), cpu.read(0xFF0F));
+        assertEquals(0, t.read(0xFF05));
+    }
+
+    @Test
+    void nextEventCycleIsMaxWhenDisabled() {
+        Timer t = newComponent();
+        assertEquals(Long.MAX_VALUE, t.nextEventCycle(0));
+    }
 }
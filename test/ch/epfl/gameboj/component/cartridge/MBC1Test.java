@@ -0,0 +1,74 @@
+package ch.epfl.gameboj.component.cartridge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.memory.Rom;
+
+public final class MBC1Test {
+    private static final int BANK_SIZE = 0x4000;
+
+    private static MBC1 mbcOnBus(Bus bus, int banks, int ramSize) {
+        byte[] romData = new byte[banks * BANK_SIZE];
+        for (int b = 0; b < banks; ++b) {
+            romData[b * BANK_SIZE] = (byte) b;
+            romData[b * BANK_SIZE + BANK_SIZE - 1] = (byte) (0x80 | b);
+        }
+        MBC1 mbc = new MBC1(new Rom(romData), ramSize);
+        bus.attach(mbc);
+        mbc.mapOn(bus.directMapping(mbc));
+        return mbc;
+    }
+
+    @Test
+    void busFollowsRomBankSwitches() {
+        Bus bus = new Bus();
+        mbcOnBus(bus, 8, 0);
+
+        assertEquals(0, bus.read(0));
+        assertEquals(1, bus.read(0x4000));
+        for (int b = 1; b < 8; ++b) {
+            bus.write(0x2000, b);
+            assertEquals(b, bus.read(0x4000));
+            assertEquals(0x80 | b, bus.read(0x7FFF));
+        }
+        bus.write(0x2000, 0);
+        assertEquals(1, bus.read(0x4000));
+    }
+
+    @Test
+    void busFollowsRamEnabling() {
+        Bus bus = new Bus();
+        mbcOnBus(bus, 2, 0x800);
+
+        bus.write(0xA000, 1);
+        assertEquals(0xFF, bus.read(0xA000));
+
+        bus.write(0, 0xA);
+        bus.write(0xA001, 2);
+        assertEquals(2, bus.read(0xA001));
+        assertEquals(2, bus.read(0xA801));
+        assertEquals(2, bus.read(0xB801));
+
+        bus.write(0, 0);
+        assertEquals(0xFF, bus.read(0xA001));
+    }
+
+    @Test
+    void busFollowsRestoredBanks() {
+        Bus bus = new Bus();
+        MBC1 mbc = mbcOnBus(bus, 4, 0);
+        bus.write(0x2000, 3);
+        ByteBuffer state = ByteBuffer.allocate(4);
+        mbc.saveState(state);
+
+        bus.write(0x2000, 2);
+        state.flip();
+        mbc.loadState(state);
+        assertEquals(3, bus.read(0x4000));
+    }
+}
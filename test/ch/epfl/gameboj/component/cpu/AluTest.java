@@ -337,4 +337,44 @@ public class AluTest {
         assertThrows(IndexOutOfBoundsException.class, () ->
                 Alu.testBit(v, index));
     }
+
+    @Test
+    void addAndSubWorkOnAllOperands() {
+        for (int c = 0; c <= 1; ++c) {
+            for (int l = 0; l <= 0xFF; ++l) {
+                for (int r = 0; r <= 0xFF; ++r) {
+                    int sum = (l + r + c) & 0xFF;
+                    int eAdd = sum << 8 | Alu.maskZNHC(sum == 0, false,
+                            (l & 0xF) + (r & 0xF) + c > 0xF, l + r + c > 0xFF);
+                    int difference = (l - r - c) & 0xFF;
+                    int eSub = difference << 8 | Alu.maskZNHC(difference == 0,
+                            true, (l & 0xF) < (r & 0xF) + c, l < r + c);
+
+                    assertEquals(eAdd, Alu.add(l, r, c == 1));
+                    assertEquals(eSub, Alu.sub(l, r, c == 1));
+                    assertEquals(eAdd & 0xF0, Alu.addFlags(l, r, c));
+                    assertEquals(eSub & 0xF0, Alu.subFlags(l, r, c));
+                }
+            }
+        }
+    }
+
+    @Test
+    void logicalOperationsAndSwapWorkOnAllValues() {
+        for (int v = 0; v <= 0xFF; ++v) {
+            int swapped = (v >>> 4 | v << 4) & 0xFF;
+
+            assertEquals(v << 8 | (v == 0 ? 0xA0 : 0x20), Alu.and(v, 0xFF));
+            assertEquals(v << 8 | (v == 0 ? 0x80 : 0), Alu.or(v, 0));
+            assertEquals(0x80, Alu.xor(v, v));
+            assertEquals(swapped << 8 | (v == 0 ? 0x80 : 0), Alu.swap(v));
+        }
+    }
+
+    @Test
+    void binaryOperationsThrowOnNegativeOperands() {
+        assertThrows(IllegalArgumentException.class, () -> Alu.add(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> Alu.sub(0, -1));
+        assertThrows(IllegalArgumentException.class, () -> Alu.xor(-1, -1));
+    }
 }
@@ -0,0 +1,94 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+class IdleLoopDetectorTest {
+    private static final int HEAD = 0x150;
+    private static final long REGISTERS = 0x0123_4567_89AB_CDEFL;
+    private static final long SP_IME = 0xFFFE;
+    private static final int PERIOD = 8;
+
+    /**
+     * Runs one iteration of a three instructions loop starting at the given
+     * cycle, the other components next acting at the given cycle
+     */
+    private static void iterate(IdleLoopDetector d, long start,
+            long registers, long nextEvent) {
+        assertEquals(0, d.skippableIterations(start - 1, start, nextEvent));
+        for (int i = 0; i < 3; ++i) {
+            d.executed();
+            d.skippableIterations(start + i + 1, start + i + 2, nextEvent);
+        }
+        d.backwardJump(HEAD, registers, SP_IME, start + PERIOD);
+    }
+
+    @Test
+    void identicalIterationsAreSkippedUntilNextEvent() {
+        IdleLoopDetector d = new IdleLoopDetector();
+        d.backwardJump(HEAD, REGISTERS, SP_IME, 100);
+        iterate(d, 100, REGISTERS, 1000);
+
+        assertEquals((1000 - 108) / PERIOD,
+                d.skippableIterations(101, 108, 1000));
+        assertEquals(PERIOD, d.period());
+        assertEquals(3, d.periodInstructions());
+        assertTrue(d.isTracking());
+    }
+
+    @Test
+    void iterationsAreNotSkippedPastTheNextEvent() {
+        IdleLoopDetector d = new IdleLoopDetector();
+        d.backwardJump(HEAD, REGISTERS, SP_IME, 100);
+        iterate(d, 100, REGISTERS, 105);
+
+        assertEquals(0, d.skippableIterations(101, 108, 1000));
+    }
+
+    @Test
+    void iterationsChangingTheStateAreNotSkipped() {
+        IdleLoopDetector d = new IdleLoopDetector();
+        d.backwardJump(HEAD, REGISTERS, SP_IME, 100);
+        iterate(d, 100, REGISTERS + 1, 1000);
+
+        assertEquals(0, d.skippableIterations(101, 108, 1000));
+    }
+
+    @Test
+    void iterationsWithSideEffectsAreNotSkipped() {
+        IdleLoopDetector d = new IdleLoopDetector();
+        d.backwardJump(HEAD, REGISTERS, SP_IME, 100);
+        d.skippableIterations(99, 100, 1000);
+        d.executed();
+        d.abort();
+        assertFalse(d.isTracking());
+        d.backwardJump(HEAD, REGISTERS, SP_IME, 108);
+
+        assertEquals(0, d.skippableIterations(101, 108, 1000));
+    }
+
+    @Test
+    void skippingIterationsDoesntChangeTheEmulation() {
+        //The boot ROM waits for the LCD in idle loops
+        GameBoy g1 = new GameBoy(
+                CartridgeTest.cartridgeWithData(new byte[0x8000]));
+        GameBoy g2 = new GameBoy(
+                CartridgeTest.cartridgeWithData(new byte[0x8000]));
+        long end = 2 * GameBoy.CYCLES_PER_SECOND;
+
+        g1.runUntil(end);
+        for (long c = 0; c < end; c += 1000)
+            g2.runUntil(c);
+        g2.runUntil(end);
+
+        //Iterations aren't skipped beyond the cycle given to runUntil
+        assertTrue(g1.cpu().idleLoopCycles() > g2.cpu().idleLoopCycles());
+        assertArrayEquals(g1.snapshot(), g2.snapshot());
+    }
+}
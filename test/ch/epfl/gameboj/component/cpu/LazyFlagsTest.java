@@ -0,0 +1,92 @@
+package ch.epfl.gameboj.component.cpu;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LazyFlagsTest {
+
+    @Test
+    void addMatchesAlu() {
+        for (int l = 0; l <= 0xFF; ++l) {
+            for (int r = 0; r <= 0xFF; ++r) {
+                for (boolean c : new boolean[] { false, true }) {
+                    LazyFlags f = new LazyFlags();
+                    int vf = Alu.add(l, r, c);
+                    assertEquals(Alu.unpackValue(vf), f.add(l, r, c));
+                    assertEquals(Alu.unpackFlags(vf), f.get());
+                }
+            }
+        }
+    }
+
+    @Test
+    void subMatchesAlu() {
+        for (int l = 0; l <= 0xFF; ++l) {
+            for (int r = 0; r <= 0xFF; ++r) {
+                for (boolean b : new boolean[] { false, true }) {
+                    LazyFlags f = new LazyFlags();
+                    int vf = Alu.sub(l, r, b);
+                    assertEquals(Alu.unpackValue(vf), f.sub(l, r, b));
+                    assertEquals(Alu.unpackFlags(vf), f.get());
+                }
+            }
+        }
+    }
+
+    @Test
+    void logicalOperationsMatchAlu() {
+        for (int l = 0; l <= 0xFF; ++l) {
+            for (int r = 0; r <= 0xFF; ++r) {
+                LazyFlags f = new LazyFlags();
+                assertEquals(Alu.unpackValue(Alu.and(l, r)), f.and(l, r));
+                assertEquals(Alu.unpackFlags(Alu.and(l, r)), f.get());
+                assertEquals(Alu.unpackValue(Alu.or(l, r)), f.or(l, r));
+                assertEquals(Alu.unpackFlags(Alu.or(l, r)), f.get());
+                assertEquals(Alu.unpackValue(Alu.xor(l, r)), f.xor(l, r));
+                assertEquals(Alu.unpackFlags(Alu.xor(l, r)), f.get());
+            }
+        }
+    }
+
+    @Test
+    void incAndDecKeepPreviousCarry() {
+        for (int v = 0; v <= 0xFF; ++v) {
+            for (boolean c : new boolean[] { false, true }) {
+                int cMask = c ? Alu.Flag.C.mask() : 0;
+
+                LazyFlags f = new LazyFlags();
+                f.set(cMask);
+                int inc = Alu.add(v, 1);
+                assertEquals(Alu.unpackValue(inc), f.inc(v));
+                assertEquals((Alu.unpackFlags(inc) & 0xE0) | cMask, f.get());
+
+                f.set(cMask);
+                int dec = Alu.sub(v, 1);
+                assertEquals(Alu.unpackValue(dec), f.dec(v));
+                assertEquals((Alu.unpackFlags(dec) & 0xE0) | cMask, f.get());
+            }
+        }
+    }
+
+    @Test
+    void incKeepsCarryOfPendingOperation() {
+        LazyFlags f = new LazyFlags();
+        f.add(0xFF, 0x01, false);
+        f.inc(0x0F);
+        assertEquals(Alu.maskZNHC(false, false, true, true), f.get());
+    }
+
+    @Test
+    void zeroAndCarryAreComputedWithoutMaterializing() {
+        LazyFlags f = new LazyFlags();
+        f.sub(0x10, 0x10, false);
+        assertTrue(f.zero());
+        assertFalse(f.carry());
+        f.sub(0x10, 0x11, false);
+        assertFalse(f.zero());
+        assertTrue(f.carry());
+    }
+}
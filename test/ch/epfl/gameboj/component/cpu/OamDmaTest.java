@@ -0,0 +1,66 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.gameboj.component.cpu.Opcode.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+class OamDmaTest {
+    private static final int START = 0x100;
+    //First address following the header of the cartridge
+    private static final int MAIN = 0x150;
+    private static final int REG_DMA = AddressMap.REGS_LCDC_START + 6;
+    private static final int SOURCE = AddressMap.WORK_RAM_START;
+    private static final int LAST = SOURCE + AddressMap.OAM_RAM_SIZE - 1;
+
+    private static void copy(byte[] rom, int address, Assembler asm) {
+        Assembler.Program program = asm.program();
+        for (int i = 0; i < program.bytes(); ++i)
+            rom[address + i] = (byte) program.rom().read(i);
+    }
+
+    @Test
+    void cpuCantModifyTheSourceDuringTheTransfer() {
+        //A routine in the high RAM starting a transfer, writing to its first
+        //and last source bytes during the transfer, then to another one after
+        Assembler.Program routine = new Assembler()
+                .emit(LD_A_N8, SOURCE >> 8)
+                .emit(LD_N8R_A, REG_DMA - AddressMap.REGS_START)
+                .emit(LD_A_N8, 0x99)
+                .emit(LD_N16R_A, SOURCE)
+                .emit(LD_N16R_A, LAST)
+                .emit(LD_A_N8, AddressMap.OAM_RAM_SIZE / 4)
+                .emit(DEC_A)
+                .emit(JR_NZ_E8, 0xFD)
+                .emit(LD_A_N8, 0x77)
+                .emit(LD_N16R_A, SOURCE + 1)
+                .emit(JR_E8, 0xFE)
+                .program();
+        Assembler main = new Assembler();
+        for (int i = 0; i < routine.bytes(); ++i)
+            main.emit(LD_A_N8, routine.rom().read(i))
+                    .emit(LD_N8R_A, AddressMap.HIGH_RAM_START + i
+                            - AddressMap.REGS_START);
+        main.emit(LD_A_N8, 0x11)
+                .emit(LD_N16R_A, SOURCE)
+                .emit(LD_A_N8, 0x33)
+                .emit(LD_N16R_A, LAST)
+                .emit(JP_N16, AddressMap.HIGH_RAM_START);
+
+        byte[] rom = new byte[0x8000];
+        copy(rom, START, new Assembler().emit(JP_N16, MAIN));
+        copy(rom, MAIN, main);
+        GameBoy gameBoy = new GameBoy(CartridgeTest.cartridgeWithData(rom));
+        //The boot ROM runs for about two seconds
+        gameBoy.runUntil(3 * GameBoy.CYCLES_PER_SECOND);
+
+        assertEquals(0x11, gameBoy.bus().read(AddressMap.OAM_START));
+        assertEquals(0x33, gameBoy.bus().read(AddressMap.OAM_END - 1));
+        assertEquals(0x11, gameBoy.bus().read(SOURCE));
+        assertEquals(0x33, gameBoy.bus().read(LAST));
+        assertEquals(0x77, gameBoy.bus().read(SOURCE + 1));
+    }
+}
@@ -0,0 +1,72 @@
+package ch.epfl.gameboj.component.cpu;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RegistersTest {
+
+    @Test
+    void pairsAreMadeOfTheirRegisters() {
+        Registers r = new Registers();
+        r.setBc(0x1234);
+        r.setDe(0x5678);
+        r.setHl(0x9ABC);
+
+        assertEquals(0x12, r.get(Registers.B));
+        assertEquals(0x34, r.c());
+        assertEquals(0x56, r.get(Registers.D));
+        assertEquals(0x78, r.get(Registers.E));
+        assertEquals(0x9A, r.get(Registers.H));
+        assertEquals(0xBC, r.get(Registers.L));
+
+        r.set(Registers.H, 0x11);
+        r.set(Registers.L, 0x22);
+        assertEquals(0x1122, r.hl());
+    }
+
+    @Test
+    void registersAreIndependent() {
+        Registers r = new Registers();
+        int[] indices = { Registers.B, Registers.C, Registers.D, Registers.E,
+                Registers.H, Registers.L, Registers.A };
+        for (int i = 0; i < indices.length; ++i)
+            r.set(indices[i], 0x10 + i);
+
+        for (int i = 0; i < indices.length; ++i)
+            assertEquals(0x10 + i, r.get(indices[i]));
+        assertEquals(0x16, r.a());
+        assertEquals(0x16_00_10_11_12_13_14_15L, r.pack(0));
+    }
+
+    @Test
+    void stateIsSavedInTheOrderAFBCDEHL() {
+        Registers r = new Registers();
+        r.setA(0xAA);
+        r.setBc(0xBBCC);
+        r.setDe(0xDDEE);
+        r.setHl(0xFF11);
+
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        r.saveState(buffer);
+        assertArrayEquals(new byte[] { (byte) 0xAA, 0, (byte) 0xBB,
+                (byte) 0xCC, (byte) 0xDD, (byte) 0xEE, (byte) 0xFF, 0x11 },
+                buffer.array());
+
+        Registers loaded = new Registers();
+        buffer.flip();
+        loaded.loadState(buffer);
+        assertEquals(r.pack(0), loaded.pack(0));
+    }
+
+    @Test
+    void checkIndexRejectsTheHlLocation() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Registers.checkIndex(0b110));
+        assertEquals(Registers.A, Registers.checkIndex(Registers.A));
+    }
+}
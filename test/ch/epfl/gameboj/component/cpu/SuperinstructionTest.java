@@ -0,0 +1,71 @@
+package ch.epfl.gameboj.component.cpu;
+
+import static ch.epfl.gameboj.component.cpu.Opcode.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.CartridgeTest;
+import org.junit.jupiter.api.Test;
+
+class SuperinstructionTest {
+    private static final int TIMER_HANDLER = 0x50;
+    private static final int START = 0x100;
+    private static final int COUNTER = 0xC000;
+    private static final int DIV_COPY = 0xC001;
+
+    /**
+     * A program whose main loop modifies the work RAM while the handler of
+     * the timer interruption, raised very often, reads DIV
+     */
+    private static byte[] program() {
+        byte[] rom = new byte[0x8000];
+        copy(rom, TIMER_HANDLER, new Assembler()
+                .emit(LD_A_N8R, AddressMap.REG_DIV - AddressMap.REGS_START)
+                .emit(LD_N16R_A, DIV_COPY)
+                .emit(RETI));
+        copy(rom, START, new Assembler()
+                .emit(LD_A_N8, 0b101)
+                .emit(LD_N8R_A, AddressMap.REG_TAC - AddressMap.REGS_START)
+                .emit(LD_A_N8, 1 << Cpu.Interrupt.TIMER.index())
+                .emit(LD_N8R_A, AddressMap.REG_IE - AddressMap.REGS_START)
+                .emit(EI)
+                .emit(LD_HL_N16, COUNTER)
+                .emit(LD_B_N8, 3)
+                .emit(INC_HLR)
+                .emit(LD_A_HLR)
+                .emit(ADD_A_B)
+                .emit(DEC_B)
+                .emit(JR_NZ_E8, 0xFB)
+                .emit(JR_E8, 0xF7));
+        return rom;
+    }
+
+    private static void copy(byte[] rom, int address, Assembler asm) {
+        Assembler.Program program = asm.program();
+        for (int i = 0; i < program.bytes(); ++i)
+            rom[address + i] = (byte) program.rom().read(i);
+    }
+
+    @Test
+    void fusedInstructionsDontChangeTheEmulation() {
+        GameBoy fused = new GameBoy(
+                CartridgeTest.cartridgeWithData(program()));
+        GameBoy stepped = new GameBoy(
+                CartridgeTest.cartridgeWithData(program()));
+        //The boot ROM runs for about two seconds
+        long end = 3 * GameBoy.CYCLES_PER_SECOND;
+
+        fused.runUntil(end);
+        //Running one cycle at a time, no instruction can be fused
+        for (long c = 1; c <= end; ++c)
+            stepped.runUntil(c);
+
+        assertTrue(fused.bus().read(COUNTER) != 0);
+        assertEquals(fused.cpu().instructionsRetired(),
+                stepped.cpu().instructionsRetired());
+        assertArrayEquals(fused.snapshot(), stepped.snapshot());
+    }
+}
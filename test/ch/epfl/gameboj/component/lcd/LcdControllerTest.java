@@ -0,0 +1,123 @@
+package ch.epfl.gameboj.component.lcd;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LcdControllerTest {
+    private static final int IMAGE_CYCLES = 17556;
+    private static final int REG_LCDC = AddressMap.REGS_LCDC_START;
+    private static final int REG_DMA = AddressMap.REGS_LCDC_START + 6;
+    private static final int REG_BGP = AddressMap.REGS_LCDC_START + 7;
+
+    private static final class Screen {
+        final Bus bus = new Bus();
+        final LcdController lcd;
+        long cycle = 0;
+
+        Screen(RenderPolicy policy) {
+            Cpu cpu = new Cpu();
+            lcd = new LcdController(cpu);
+            cpu.attachTo(bus);
+            lcd.attachTo(bus);
+            lcd.setRenderPolicy(policy);
+
+            //Tile 0 has colors 3 and 1 on alternate rows
+            for (int row = 0; row < 8; ++row) {
+                bus.write(AddressMap.VIDEO_RAM_START + row * 2, 0xFF);
+                bus.write(AddressMap.VIDEO_RAM_START + row * 2 + 1,
+                        row % 2 == 0 ? 0xFF : 0);
+            }
+            bus.write(REG_BGP, 0b11_10_01_00);
+            bus.write(REG_LCDC, 0b1001_0001);
+        }
+
+        Screen runUntil(long cycles) {
+            for (; cycle < cycles; ++cycle)
+                lcd.cycle(cycle);
+            return this;
+        }
+    }
+
+    @Test
+    void everyFrameDrawsTheBackground() {
+        LcdImage image = new Screen(RenderPolicy.everyFrame())
+                .runUntil(IMAGE_CYCLES).lcd.currentImage();
+
+        assertEquals(3, image.get(0, 0));
+        assertEquals(1, image.get(159, 1));
+    }
+
+    @Test
+    void currentImageIsASnapshot() {
+        Screen screen = new Screen(RenderPolicy.everyFrame())
+                .runUntil(IMAGE_CYCLES);
+        LcdImage image = screen.lcd.currentImage();
+        assertEquals(image, screen.lcd.liveImage());
+
+        screen.bus.write(REG_BGP, 0);
+        screen.runUntil(3 * IMAGE_CYCLES);
+
+        assertEquals(3, image.get(0, 0));
+        assertEquals(0, screen.lcd.currentImage().get(0, 0));
+        assertEquals(0, screen.lcd.liveImage().get(0, 0));
+    }
+
+    @Test
+    void skippedFramesKeepTimingAndInterrupts() {
+        Screen every = new Screen(RenderPolicy.everyFrame());
+        Screen nth = new Screen(RenderPolicy.everyNthFrame(2));
+        Screen onDemand = new Screen(RenderPolicy.onDemand());
+
+        for (int step = 1; step <= 12; ++step) {
+            long cycles = step * IMAGE_CYCLES / 4;
+            every.runUntil(cycles);
+            nth.runUntil(cycles);
+            onDemand.runUntil(cycles);
+
+            for (int r = AddressMap.REGS_LCDC_START;
+                    r < AddressMap.REGS_LCDC_END; ++r) {
+                assertEquals(every.bus.read(r), nth.bus.read(r));
+                assertEquals(every.bus.read(r), onDemand.bus.read(r));
+            }
+            assertEquals(every.bus.read(AddressMap.REG_IF),
+                    nth.bus.read(AddressMap.REG_IF));
+            assertEquals(every.bus.read(AddressMap.REG_IF),
+                    onDemand.bus.read(AddressMap.REG_IF));
+        }
+
+        assertEquals(every.lcd.currentImage(), nth.lcd.currentImage());
+        assertEquals(every.lcd.currentImage(), onDemand.lcd.currentImage());
+    }
+
+    @Test
+    void dmaCopiesOneByteEveryCycle() {
+        Screen screen = new Screen(RenderPolicy.everyFrame()).runUntil(10);
+        new RamController(new Ram(AddressMap.WORK_RAM_SIZE),
+                AddressMap.WORK_RAM_START).attachTo(screen.bus);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            screen.bus.write(AddressMap.WORK_RAM_START + i, i ^ 0x5A);
+
+        screen.bus.write(REG_DMA, AddressMap.WORK_RAM_START >> 8);
+        screen.runUntil(screen.cycle + 100);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            assertEquals(i < 100 ? i ^ 0x5A : 0,
+                    screen.bus.read(AddressMap.OAM_START + i));
+
+        screen.runUntil(screen.cycle + 60);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; ++i)
+            assertEquals(i ^ 0x5A, screen.bus.read(AddressMap.OAM_START + i));
+    }
+
+    @Test
+    void everyNthFrameFailsForNonPositivePeriod() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RenderPolicy.everyNthFrame(0));
+    }
+}
@@ -0,0 +1,76 @@
+package ch.epfl.gameboj.component.lcd;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class LineCompositorTest {
+    private static final int[] SIZES = { 32, 160, 256 };
+
+    private static LcdLineBuffer randomLine(Random random, int size) {
+        LcdLineBuffer line = new LcdLineBuffer(size);
+        for (int i = 0; i < size / Byte.SIZE; ++i)
+            line.setBytes(i, random.nextInt(256), random.nextInt(256));
+        return line;
+    }
+
+    private static void assertSameLines(LcdLineBuffer expected,
+            LcdLineBuffer actual) {
+        assertArrayEquals(expected.msbWords(), actual.msbWords());
+        assertArrayEquals(expected.lsbWords(), actual.lsbWords());
+        assertArrayEquals(expected.opacityWords(), actual.opacityWords());
+    }
+
+    private static void assertSameAsScalar(
+            BiConsumer<LineCompositor, LcdLineBuffer[]> operation) {
+        LineCompositor preferred = LineCompositor.preferred();
+        for (int size : SIZES) {
+            for (int seed = 0; seed < 20; ++seed) {
+                LcdLineBuffer[] expected = {
+                        randomLine(new Random(seed), size),
+                        randomLine(new Random(~seed), size) };
+                LcdLineBuffer[] actual = {
+                        randomLine(new Random(seed), size),
+                        randomLine(new Random(~seed), size) };
+
+                operation.accept(LineCompositor.scalar(), expected);
+                operation.accept(preferred, actual);
+                assertSameLines(expected[0], actual[0]);
+            }
+        }
+    }
+
+    @Test
+    void preferredBackendMatchesScalarBackend() {
+        assertSameAsScalar((c, l) -> c.below(l[0], l[1], l[1].opacityWords()));
+        assertSameAsScalar((c, l) -> c.above(l[0], l[1]));
+        assertSameAsScalar((c, l) -> c.behind(l[0], l[1]));
+        for (int palette = 0; palette < 256; palette += 37) {
+            int p = palette;
+            assertSameAsScalar((c, l) -> c.mapColors(l[0], p));
+        }
+        for (int index = 0; index <= 160; index += 7) {
+            int i = index;
+            assertSameAsScalar((c, l) ->
+                    c.join(l[0], l[1], Math.min(i, l[0].size())));
+        }
+    }
+
+    @Test
+    void scalarBackendCombinesKnownLines() {
+        LcdLineBuffer below = new LcdLineBuffer(32).setBytes(0, 0xF0, 0x0F);
+        LcdLineBuffer above = new LcdLineBuffer(32).setBytes(0, 0x3C, 0);
+
+        LineCompositor.scalar().below(below, above, above.opacityWords());
+        assertArrayEquals(new int[] { 0xFC }, below.msbWords());
+        assertArrayEquals(new int[] { 0x03 }, below.lsbWords());
+        assertArrayEquals(new int[] { 0xFF }, below.opacityWords());
+
+        LineCompositor.scalar().mapColors(below, 0b00_01_10_11);
+        assertArrayEquals(new int[] { 0xFFFF_FF03 }, below.msbWords());
+        assertArrayEquals(new int[] { 0xFFFF_FFFC }, below.lsbWords());
+    }
+}
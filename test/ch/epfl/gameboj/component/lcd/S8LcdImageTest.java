@@ -937,4 +937,40 @@ public class S8LcdImageTest {
         //assertEquals(expected, l3);
     }
 
+    @Test
+    void builderAndGetAgreeOnEveryPixel() {
+        LcdImage.Builder builder = new LcdImage.Builder(64, 3);
+        for (int y = 0; y < 3; ++y) {
+            LcdImageLine.Builder line = new LcdImageLine.Builder(64);
+            for (int b = 0; b < 8; ++b)
+                line.setBytes(b, (b * 37 + y) & 0xFF, (b * 91 + y * 7) & 0xFF);
+            builder.setLine(y, line.build());
+        }
+        LcdImage image = builder.build();
+
+        for (int y = 0; y < 3; ++y) {
+            for (int x = 0; x < 64; ++x) {
+                int b = x / 8;
+                int msb = (((b * 37 + y) & 0xFF) >>> (x % 8)) & 1;
+                int lsb = (((b * 91 + y * 7) & 0xFF) >>> (x % 8)) & 1;
+                assertEquals(msb << 1 | lsb, image.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    void mapPixelsWritesEveryPixelInOrder() {
+        LcdImageLine line = new LcdImageLine.Builder(32)
+                .setBytes(0, 0b1100, 0b1010).build();
+        LcdImage image = new LcdImage.Builder(32, 2).setLine(1, line).build();
+
+        int[] target = new int[64];
+        image.mapPixels(new int[] { 10, 11, 12, 13 }, target);
+
+        for (int y = 0; y < 2; ++y)
+            for (int x = 0; x < 32; ++x)
+                assertEquals(10 + image.get(x, y), target[y * 32 + x]);
+        assertEquals(13, target[32 + 3]);
+    }
+
 }
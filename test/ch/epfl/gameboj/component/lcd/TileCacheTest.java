@@ -0,0 +1,48 @@
+package ch.epfl.gameboj.component.lcd;
+
+import ch.epfl.gameboj.component.memory.Ram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TileCacheTest {
+
+    @Test
+    void rowsAreDecodedInDrawingOrder() {
+        Ram videoRam = new Ram(0x2000);
+        videoRam.write(5 * 16 + 3 * 2, 0b1000_0001);
+        videoRam.write(5 * 16 + 3 * 2 + 1, 0b1100_0000);
+        TileCache cache = new TileCache(videoRam);
+
+        assertEquals(0b0000_0011_1000_0001, cache.row(5, 3, false));
+        assertEquals(0b1100_0000_1000_0001, cache.row(5, 3, true));
+        assertEquals(0, cache.row(5, 2, false));
+    }
+
+    @Test
+    void onlyInvalidatedTilesAreDecodedAgain() {
+        Ram videoRam = new Ram(0x2000);
+        TileCache cache = new TileCache(videoRam);
+        assertEquals(0, cache.row(0, 0, true));
+        assertEquals(0, cache.row(383, 7, true));
+
+        videoRam.write(0, 0xAB);
+        videoRam.write(383 * 16 + 15, 0xCD);
+        assertEquals(0, cache.row(0, 0, true));
+
+        cache.invalidate(0);
+        cache.invalidate(383 * 16 + 15);
+        assertEquals(0xAB, cache.row(0, 0, true));
+        assertEquals(0xCD00, cache.row(383, 7, true));
+    }
+
+    @Test
+    void rowFailsForInvalidTile() {
+        TileCache cache = new TileCache(new Ram(0x2000));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> cache.row(384, 0, false));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> cache.row(0, 8, false));
+    }
+}
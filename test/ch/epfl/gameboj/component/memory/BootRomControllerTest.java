@@ -9,6 +9,7 @@ import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 
+import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.ComponentTest;
 import ch.epfl.gameboj.component.cartridge.CartridgeTest;
@@ -60,6 +61,21 @@ public final class BootRomControllerTest implements ComponentTest {
             assertEquals(Byte.toUnsignedInt(romData[a]), c.read(a));
     }
     
+    @Test
+    void bootRomIsUnmappedFromTheBusByAWriteToFF50() {
+        byte[] romData = new byte[0x8000];
+        romData[0] = 0x42;
+        romData[0x7FFF] = 0x43;
+        Bus bus = new Bus();
+        new BootRomController(CartridgeTest.cartridgeWithData(romData))
+                .attachTo(bus);
+
+        assertEquals(Byte.toUnsignedInt(bootRomData[0]), bus.read(0));
+        assertEquals(0x43, bus.read(0x7FFF));
+        bus.write(0xFF50, 0);
+        assertEquals(0x42, bus.read(0));
+    }
+
     private static byte[] bootRomData = new byte[] {
             (byte)0x31, (byte)0xFE, (byte)0xFF, (byte)0x21, (byte)0x00, (byte)0x80, (byte)0x22, (byte)0xCB,
             (byte)0x6C, (byte)0x28, (byte)0xFB, (byte)0x3E, (byte)0x80, (byte)0xE0, (byte)0x26, (byte)0xE0,
@@ -0,0 +1,79 @@
+package ch.epfl.gameboj.component.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RomStoreTest {
+    private static Path fileWithData(byte[] data) throws IOException {
+        Path path = Files.createTempFile("TestROM_", ".gb");
+        path.toFile().deleteOnExit();
+        Files.write(path, data);
+        return path;
+    }
+
+    @Test
+    void loadFailsWithNonExistentFile() {
+        RomStore store = new RomStore();
+        assertThrows(IOException.class,
+                () -> store.load(Path.of("____\\\\....////____")));
+    }
+
+    @Test
+    void loadedRomHasContentOfFile() throws IOException {
+        byte[] data = new byte[0x8000];
+        new Random(2018).nextBytes(data);
+        Rom rom = new RomStore().load(fileWithData(data));
+
+        assertEquals(data.length, rom.size());
+        for (int i = 0; i < data.length; ++i)
+            assertEquals(Byte.toUnsignedInt(data[i]), rom.read(i));
+    }
+
+    @Test
+    void romsWithSameContentAreShared() throws IOException {
+        byte[] data = new byte[0x8000];
+        new Random(2018).nextBytes(data);
+        RomStore store = new RomStore();
+
+        Rom r1 = store.load(fileWithData(data));
+        Rom r2 = store.load(fileWithData(data));
+        data[0x1234] ^= 1;
+        Rom r3 = store.load(fileWithData(data));
+
+        assertSame(r1, r2);
+        assertNotSame(r1, r3);
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void fileLoadedAgainIsOnlyReadIfModified() throws IOException {
+        byte[] data = new byte[0x8000];
+        new Random(2018).nextBytes(data);
+        Path path = fileWithData(data);
+        RomStore store = new RomStore();
+
+        Rom r1 = store.load(path);
+        FileTime modified = Files.getLastModifiedTime(path);
+        //Same size and modification time: the file isn't read again
+        data[0x1234] ^= 1;
+        Files.write(path, data);
+        Files.setLastModifiedTime(path, modified);
+        assertSame(r1, store.load(path));
+
+        Files.write(path, Arrays.copyOf(data, 0x10000));
+        Rom r2 = store.load(path);
+        assertNotSame(r1, r2);
+        assertEquals(0x10000, r2.size());
+    }
+}